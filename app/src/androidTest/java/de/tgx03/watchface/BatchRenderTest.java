@@ -0,0 +1,68 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.support.wearable.complications.ComplicationData;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Renders a simulated day of the watchface on all default screens.
+ * The images and the timing report end up in the external files directory of the app under "renders".
+ * As this writes thousands of images, it only runs when asked for with
+ * {@code ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.batchRender=true}
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchRenderTest {
+
+    // Time between two rendered frames of the simulated day
+    private static final long FRAME_INTERVAL_MS = 15 * 60 * 1000;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+    // The instrumentation argument enabling the batch render
+    private static final String ARGUMENT = "batchRender";
+
+    @Test
+    public void renderSimulatedDay() throws IOException {
+        assumeTrue("Batch render not requested", Boolean.parseBoolean(InstrumentationRegistry.getArguments().getString(ARGUMENT)));
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        File output = new File(context.getExternalFilesDir(null), "renders");
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        long dayStart = calendar.getTimeInMillis();
+
+        List<BatchRenderer.Job> jobs = new ArrayList<>();
+        for (Map.Entry<String, ComplicationData[]> fixture : ComplicationFixtures.create(dayStart).entrySet()) {
+            for (BatchRenderer.Screen screen : BatchRenderer.DEFAULT_SCREENS) {
+                for (BatchRenderer.Mode mode : BatchRenderer.Mode.values()) {
+                    for (long time = dayStart; time < dayStart + DAY_MS; time += FRAME_INTERVAL_MS) {
+                        jobs.add(new BatchRenderer.Job(time, screen, mode, fixture.getKey(), fixture.getValue()));
+                    }
+                }
+            }
+        }
+
+        BatchRenderer.Report report = new BatchRenderer(context, output).render(jobs);
+        assertEquals(jobs.size(), report.results.size());
+        for (BatchRenderer.Result result : report.results) {
+            assertNotNull(result.file);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.support.wearable.complications.ComplicationData;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders the watchface for many timestamps, screen sizes, modes and complications
+ * in parallel outside of a running watch and writes the results as PNGs with a timing report.
+ * All frames of the same screen, mode and complications get rendered in order of their time
+ * by the same renderer, so the measured times include the caching the watchface does between frames
+ */
+class BatchRenderer {
+
+    private static final String TAG = "BatchRenderer";
+
+    /**
+     * The screens the watchface usually gets rendered on
+     */
+    static final Screen[] DEFAULT_SCREENS = {
+            new Screen(360, 360, true),
+            new Screen(390, 390, true),
+            new Screen(454, 454, true),
+            new Screen(320, 320, false)};
+
+    /**
+     * The mode the watchface gets drawn in
+     */
+    enum Mode {
+        INTERACTIVE,
+        AMBIENT,
+        AMBIENT_BURN_IN
+    }
+
+    /**
+     * The size and shape of a screen
+     */
+    static class Screen {
+
+        final int width;
+        final int height;
+        final boolean round;
+
+        Screen(int width, int height, boolean round) {
+            this.width = width;
+            this.height = height;
+            this.round = round;
+        }
+
+        @Override
+        public String toString() {
+            return (round ? "round" : "square") + width + "x" + height;
+        }
+    }
+
+    /**
+     * A single frame to render
+     */
+    static class Job {
+
+        final long time;
+        final Screen screen;
+        final Mode mode;
+        final String fixtureName;
+        final ComplicationData[] fixture;
+
+        /**
+         * @param time        The time to show
+         * @param screen      The screen to render for
+         * @param mode        The mode to render in
+         * @param fixtureName The name of the complications, used for naming the output
+         * @param fixture     The data of each complication slot, entries may be null.
+         *                    All jobs with the same fixture name have to pass the same array
+         */
+        Job(long time, Screen screen, Mode mode, String fixtureName, ComplicationData[] fixture) {
+            this.time = time;
+            this.screen = screen;
+            this.mode = mode;
+            this.fixtureName = fixtureName;
+            this.fixture = fixture;
+        }
+
+        /**
+         * @return The name shared by all frames which get rendered by the same renderer
+         */
+        String series() {
+            return screen + "_" + mode.name().toLowerCase(Locale.ROOT) + "_" + fixtureName;
+        }
+    }
+
+    /**
+     * The outcome of rendering a single frame
+     */
+    static class Result {
+
+        final Job job;
+        final long renderNanos;
+        final File file;
+
+        Result(Job job, long renderNanos, File file) {
+            this.job = job;
+            this.renderNanos = renderNanos;
+            this.file = file;
+        }
+    }
+
+    /**
+     * The outcome of rendering a whole batch
+     */
+    static class Report {
+
+        final List<Result> results;
+        final long wallNanos;
+
+        Report(List<Result> results, long wallNanos) {
+            this.results = results;
+            this.wallNanos = wallNanos;
+        }
+
+        /**
+         * Writes the render times of every series and the whole batch to a file
+         *
+         * @param file The file to write to
+         * @throws IOException Gets thrown when the file couldn't be written
+         */
+        void write(File file) throws IOException {
+            Map<String, List<Result>> series = new LinkedHashMap<>();
+            for (Result result : results) {
+                List<Result> list = series.get(result.job.series());
+                if (list == null) {
+                    list = new ArrayList<>();
+                    series.put(result.job.series(), list);
+                }
+                list.add(result);
+            }
+            try (PrintWriter writer = new PrintWriter(file)) {
+                writer.println("series\tframes\tfirst_ms\tavg_ms\tmax_ms\ttotal_ms");
+                long total = 0;
+                for (Map.Entry<String, List<Result>> entry : series.entrySet()) {
+                    long sum = 0;
+                    long max = 0;
+                    for (Result result : entry.getValue()) {
+                        sum += result.renderNanos;
+                        max = Math.max(max, result.renderNanos);
+                    }
+                    total += sum;
+                    List<Result> list = entry.getValue();
+                    writer.printf(Locale.ROOT, "%s\t%d\t%.3f\t%.3f\t%.3f\t%.3f%n", entry.getKey(), list.size(),
+                            list.get(0).renderNanos / 1e6, sum / 1e6 / list.size(), max / 1e6, sum / 1e6);
+                }
+                writer.printf(Locale.ROOT, "total\t%d\t\t%.3f\t\t%.3f%n", results.size(),
+                        results.isEmpty() ? 0 : total / 1e6 / results.size(), total / 1e6);
+                writer.printf(Locale.ROOT, "wall_ms\t%.3f%n", wallNanos / 1e6);
+            }
+        }
+    }
+
+    private final Context context;
+    private final File outputDirectory;
+    private final int parallelism;
+
+    /**
+     * Creates a new batch renderer using all cores of the device
+     *
+     * @param context         The context to load the resources of the watchface from
+     * @param outputDirectory The directory the images and the report get written to
+     */
+    BatchRenderer(Context context, File outputDirectory) {
+        this.context = context;
+        this.outputDirectory = outputDirectory;
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Renders all frames and writes them as PNGs and a report to the output directory
+     *
+     * @param jobs The frames to render
+     * @return The render times of all frames
+     * @throws IOException              Gets thrown when the output couldn't be written
+     * @throws IllegalArgumentException Gets thrown when jobs of the same series use different complication data
+     */
+    Report render(List<Job> jobs) throws IOException, IllegalArgumentException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Couldn't create " + outputDirectory);
+        }
+        // Make sure the fonts don't get swapped while rendering
+        FontCache.load(context).join();
+        Map<String, List<Job>> series = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            List<Job> list = series.get(job.series());
+            if (list == null) {
+                list = new ArrayList<>();
+                series.put(job.series(), list);
+            } else if (list.get(0).fixture != job.fixture) {
+                // A series gets drawn by one renderer with the data of its first job
+                throw new IllegalArgumentException("Series " + job.series() + " uses different complication data");
+            }
+            list.add(job);
+        }
+        List<RenderTask> tasks = new ArrayList<>();
+        for (List<Job> list : series.values()) {
+            list.sort(Comparator.comparingLong(job -> job.time));
+            tasks.add(new RenderTask(list));
+        }
+
+        Log.i(TAG, "Rendering " + jobs.size() + " frames in " + series.size() + " series on " + parallelism + " threads");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        long wallNanos = System.nanoTime() - start;
+
+        List<Result> results = new ArrayList<>(jobs.size());
+        for (RenderTask task : tasks) {
+            Collections.addAll(results, task.results);
+        }
+        Report report = new Report(results, wallNanos);
+        report.write(new File(outputDirectory, "report.tsv"));
+        return report;
+    }
+
+    /**
+     * Renders all frames of a series in order with a single renderer.
+     * Series don't get split up, so only the first frame of each series is drawn by a cold renderer
+     */
+    private class RenderTask extends RecursiveAction {
+
+        private final List<Job> jobs;
+        private final Result[] results;
+
+        RenderTask(List<Job> jobs) {
+            this.jobs = jobs;
+            this.results = new Result[jobs.size()];
+        }
+
+        @Override
+        protected void compute() {
+            Job first = jobs.get(0);
+            Screen screen = first.screen;
+            FaceRenderer renderer = new FaceRenderer(context, WatchFace.COMPLICATION_SLOTS, () -> {
+            });
+            renderer.setSize(screen.width, screen.height);
+            renderer.setProperties(first.mode == Mode.AMBIENT_BURN_IN, false);
+            // Keep the burn in offsets the same between runs, so the images can be compared
+            renderer.setBurnInSeed(first.series().hashCode());
+            renderer.setAmbient(first.mode != Mode.INTERACTIVE);
+            for (int i = 0; i < first.fixture.length; i++) {
+                if (first.fixture[i] != null) {
+                    renderer.setComplicationData(i, first.fixture[i], first.time);
+                }
+            }
+
+            Bitmap bitmap = Bitmap.createBitmap(screen.width, screen.height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+            Rect bounds = new Rect(0, 0, screen.width, screen.height);
+            Path roundScreen = new Path();
+            roundScreen.addCircle(screen.width / 2f, screen.height / 2f, Math.min(screen.width, screen.height) / 2f, Path.Direction.CW);
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT);
+
+            for (int i = 0; i < jobs.size(); i++) {
+                Job job = jobs.get(i);
+                bitmap.eraseColor(Color.BLACK);
+                canvas.save();
+                if (screen.round) {
+                    canvas.clipPath(roundScreen);
+                }
+                long start = System.nanoTime();
+                renderer.draw(canvas, bounds, job.time);
+                long renderNanos = System.nanoTime() - start;
+                canvas.restore();
+
+                File file = new File(outputDirectory, job.series() + "_" + format.format(new Date(job.time)) + ".png");
+                try (OutputStream out = new FileOutputStream(file)) {
+                    bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+                } catch (IOException e) {
+                    Log.e(TAG, "Couldn't write " + file, e);
+                    file = null;
+                }
+                results[i] = new Result(job, renderNanos, file);
+            }
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package de.tgx03.watchface;
+
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static de.tgx03.watchface.WatchFace.BOTTOM_LARGE_COMPLICATION;
+import static de.tgx03.watchface.WatchFace.BOTTOM_LEFT_COMPLICATION;
+import static de.tgx03.watchface.WatchFace.BOTTOM_MIDDLE_COMPLICATION;
+import static de.tgx03.watchface.WatchFace.BOTTOM_RIGHT_COMPLICATION;
+import static de.tgx03.watchface.WatchFace.TOP_COMPLICATION;
+
+/**
+ * Complication data used for rendering the watchface without real providers
+ */
+final class ComplicationFixtures {
+
+    private static final long HOUR = 60 * 60 * 1000;
+
+    private ComplicationFixtures() {
+    }
+
+    /**
+     * Creates all fixtures
+     *
+     * @param dayStart The start of the simulated day, which time dependent complications count towards or from
+     * @return All fixtures by their name
+     */
+    static Map<String, ComplicationData[]> create(long dayStart) {
+        Map<String, ComplicationData[]> fixtures = new LinkedHashMap<>();
+        fixtures.put("empty", new ComplicationData[WatchFace.COMPLICATION_SLOTS.length]);
+        fixtures.put("static", staticText());
+        fixtures.put("countdown", timeDependent(dayStart));
+        return fixtures;
+    }
+
+    /**
+     * @return Complications with text that never changes
+     */
+    private static ComplicationData[] staticText() {
+        ComplicationData[] data = new ComplicationData[WatchFace.COMPLICATION_SLOTS.length];
+        data[TOP_COMPLICATION] = longText(ComplicationText.plainText("Team meeting"), "Calendar");
+        data[BOTTOM_LARGE_COMPLICATION] = longText(ComplicationText.plainText("Partly cloudy, 18°"), "Weather");
+        data[BOTTOM_LEFT_COMPLICATION] = shortText(ComplicationText.plainText("72"), "bpm");
+        data[BOTTOM_MIDDLE_COMPLICATION] = rangedValue(64, "64%");
+        data[BOTTOM_RIGHT_COMPLICATION] = shortText(ComplicationText.plainText("8k"), "steps");
+        return data;
+    }
+
+    /**
+     * @param dayStart The start of the simulated day
+     * @return Complications which show countdowns and times that change throughout the day
+     */
+    private static ComplicationData[] timeDependent(long dayStart) {
+        ComplicationData[] data = new ComplicationData[WatchFace.COMPLICATION_SLOTS.length];
+        data[TOP_COMPLICATION] = longText(new ComplicationText.TimeDifferenceBuilder()
+                .setReferencePeriodStart(dayStart + 12 * HOUR)
+                .setReferencePeriodEnd(dayStart + 13 * HOUR)
+                .setStyle(ComplicationText.DIFFERENCE_STYLE_WORDS_SINGLE_UNIT)
+                .setSurroundingText("Lunch ^1")
+                .build(), "Calendar");
+        data[BOTTOM_LARGE_COMPLICATION] = longText(new ComplicationText.TimeFormatBuilder()
+                .setFormat("EEE HH:mm")
+                .setSurroundingText("Tokyo ^1")
+                .build(), "World clock");
+        data[BOTTOM_LEFT_COMPLICATION] = shortText(new ComplicationText.TimeDifferenceBuilder()
+                .setReferencePeriodStart(dayStart + 18 * HOUR)
+                .setReferencePeriodEnd(dayStart + 18 * HOUR)
+                .setStyle(ComplicationText.DIFFERENCE_STYLE_SHORT_DUAL_UNIT)
+                .build(), "Sunset");
+        data[BOTTOM_MIDDLE_COMPLICATION] = rangedValue(50, "50%");
+        data[BOTTOM_RIGHT_COMPLICATION] = shortText(new ComplicationText.TimeDifferenceBuilder()
+                .setReferencePeriodStart(dayStart + 6 * HOUR)
+                .setReferencePeriodEnd(dayStart + 6 * HOUR)
+                .setStyle(ComplicationText.DIFFERENCE_STYLE_STOPWATCH)
+                .build(), "Timer");
+        return data;
+    }
+
+    private static ComplicationData longText(ComplicationText text, String title) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_LONG_TEXT)
+                .setLongText(text)
+                .setLongTitle(ComplicationText.plainText(title))
+                .build();
+    }
+
+    private static ComplicationData shortText(ComplicationText text, String title) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                .setShortText(text)
+                .setShortTitle(ComplicationText.plainText(title))
+                .build();
+    }
+
+    private static ComplicationData rangedValue(float value, String text) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_RANGED_VALUE)
+                .setMinValue(0)
+                .setMaxValue(100)
+                .setValue(value)
+                .setShortText(ComplicationText.plainText(text))
+                .build();
+    }
+}
@@ -0,0 +1,145 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.wearable.complications.ComplicationData;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the watchface with a simulated clock across minute, day and daylight saving time boundaries
+ * and checks that a renderer which has been running the whole time
+ * draws exactly the same frames as a freshly created one
+ */
+@RunWith(AndroidJUnit4.class)
+public class SimulatedTimeTest {
+
+    private static final int SIZE = 390;
+    private static final long SECOND_MS = 1000;
+    // How many seconds get simulated around each boundary
+    private static final int STEPS = 5;
+
+    @Test
+    public void minuteRollover() {
+        TimeZone zone = TimeZone.getDefault();
+        run(time(zone, 2021, Calendar.MARCH, 14, 10, 41, 58), zone, false);
+        run(time(zone, 2021, Calendar.MARCH, 14, 10, 41, 58), zone, true);
+    }
+
+    @Test
+    public void midnightRollover() {
+        TimeZone zone = TimeZone.getDefault();
+        run(time(zone, 2021, Calendar.MARCH, 14, 23, 59, 58), zone, false);
+        run(time(zone, 2021, Calendar.MARCH, 14, 23, 59, 58), zone, true);
+    }
+
+    @Test
+    public void daylightSavingTimeStart() {
+        // Clocks jump from 02:00 to 03:00
+        TimeZone zone = TimeZone.getTimeZone("Europe/Berlin");
+        run(time(zone, 2021, Calendar.MARCH, 28, 1, 59, 58), zone, false);
+        run(time(zone, 2021, Calendar.MARCH, 28, 1, 59, 58), zone, true);
+    }
+
+    @Test
+    public void daylightSavingTimeEnd() {
+        // Clocks jump from the first 03:00 back to 02:00
+        TimeZone zone = TimeZone.getTimeZone("Europe/Berlin");
+        run(time(zone, 2021, Calendar.OCTOBER, 31, 1, 59, 58) + 60 * 60 * SECOND_MS, zone, false);
+        run(time(zone, 2021, Calendar.OCTOBER, 31, 1, 59, 58) + 60 * 60 * SECOND_MS, zone, true);
+    }
+
+    /**
+     * Runs a boundary with complications that change over time and with ones that don't
+     *
+     * @param start   The time to start at, two seconds before a boundary
+     * @param zone    The time zone to show the time in
+     * @param ambient Whether to draw in ambient mode
+     */
+    private void run(long start, TimeZone zone, boolean ambient) {
+        run(start, zone, ambient, "countdown");
+        run(start, zone, ambient, "static");
+    }
+
+    /**
+     * Advances a fixed clock second by second from a start time
+     * and compares every frame of a running renderer with the one of a new renderer.
+     * In ambient mode with static complications, the frame also has to change exactly at the minute boundary
+     *
+     * @param start       The time to start at, two seconds before a boundary
+     * @param zone        The time zone to show the time in
+     * @param ambient     Whether to draw in ambient mode
+     * @param fixtureName The complications to show
+     */
+    private void run(long start, TimeZone zone, boolean ambient, String fixtureName) {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        FontCache.load(context).join();
+        TimeSource.Fixed clock = TimeSource.fixed(start);
+        ComplicationData[] fixture = ComplicationFixtures.create(start).get(fixtureName);
+        // Interactive frames show seconds and the countdown changes every second, so only these frames stay the same
+        boolean checkBoundary = ambient && fixtureName.equals("static");
+        FaceRenderer renderer = createRenderer(context, fixture, clock.currentTimeMillis(), zone, ambient);
+
+        Bitmap previous = null;
+        for (int i = 0; i < STEPS; i++) {
+            long now = clock.currentTimeMillis();
+            Bitmap running = draw(renderer, now);
+            Bitmap fresh = draw(createRenderer(context, fixture, now, zone, ambient), now);
+            assertTrue("Running renderer differs at " + now, running.sameAs(fresh));
+            if (checkBoundary && previous != null) {
+                boolean boundary = now % (60 * SECOND_MS) == 0;
+                assertEquals("Frame " + (boundary ? "didn't change at the boundary " : "changed between boundaries ") + now,
+                        boundary, !running.sameAs(previous));
+            }
+            if (previous != null) {
+                previous.recycle();
+            }
+            fresh.recycle();
+            previous = running;
+            clock.advance(SECOND_MS);
+        }
+        if (previous != null) {
+            previous.recycle();
+        }
+    }
+
+    private static FaceRenderer createRenderer(Context context, ComplicationData[] fixture, long now, TimeZone zone, boolean ambient) {
+        FaceRenderer renderer = new FaceRenderer(context, WatchFace.COMPLICATION_SLOTS, () -> {
+        });
+        renderer.setTimeZone(zone);
+        renderer.setSize(SIZE, SIZE);
+        renderer.setProperties(false, false);
+        renderer.setAmbient(ambient);
+        for (int i = 0; i < fixture.length; i++) {
+            if (fixture[i] != null) {
+                renderer.setComplicationData(i, fixture[i], now);
+            }
+        }
+        return renderer;
+    }
+
+    private static Bitmap draw(FaceRenderer renderer, long now) {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        renderer.draw(new Canvas(bitmap), new Rect(0, 0, SIZE, SIZE), now);
+        return bitmap;
+    }
+
+    private static long time(TimeZone zone, int year, int month, int day, int hour, int minute, int second) {
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute, second);
+        return calendar.getTimeInMillis();
+    }
+}
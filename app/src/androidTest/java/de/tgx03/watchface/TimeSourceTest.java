@@ -0,0 +1,109 @@
+package de.tgx03.watchface;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the time sources and how their delays get converted to real time
+ */
+@RunWith(AndroidJUnit4.class)
+public class TimeSourceTest {
+
+    @Test
+    public void fixedOnlyChangesWhenTold() {
+        TimeSource.Fixed clock = TimeSource.fixed(1000);
+        assertEquals(1000, clock.currentTimeMillis());
+        clock.advance(500);
+        assertEquals(1500, clock.currentTimeMillis());
+        clock.setTime(42);
+        assertEquals(42, clock.currentTimeMillis());
+        assertEquals(250, clock.toRealDelay(250));
+    }
+
+    @Test
+    public void fixedAdvancesAtomically() throws InterruptedException {
+        TimeSource.Fixed clock = TimeSource.fixed(0);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    clock.advance(1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, clock.currentTimeMillis());
+    }
+
+    @Test
+    public void offsetFollowsItsSource() {
+        TimeSource.Fixed clock = TimeSource.fixed(1000);
+        TimeSource shifted = TimeSource.offset(clock, -300);
+        assertEquals(700, shifted.currentTimeMillis());
+        clock.advance(60 * 1000);
+        assertEquals(60700, shifted.currentTimeMillis());
+    }
+
+    @Test
+    public void offsetDelegatesDelays() {
+        TimeSource shifted = TimeSource.offset(TimeSource.fastForward(0, 10), 5000);
+        assertEquals(100, shifted.toRealDelay(1000));
+    }
+
+    @Test
+    public void fastForwardRoundsDelaysUp() {
+        TimeSource source = TimeSource.fastForward(0, 60);
+        assertEquals(1000, source.toRealDelay(60 * 1000));
+        // 16.67ms get rounded up, so updates never happen before the time was reached
+        assertEquals(17, source.toRealDelay(1000));
+        assertEquals(0, source.toRealDelay(0));
+        assertEquals(2000, TimeSource.fastForward(0, 0.5).toRealDelay(1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fastForwardRejectsZero() {
+        TimeSource.fastForward(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fastForwardRejectsNaN() {
+        TimeSource.fastForward(0, Double.NaN);
+    }
+
+    @Test
+    public void delayUntilNextInterval() {
+        TimeSource.Fixed clock = TimeSource.fixed(1234);
+        assertEquals(766, clock.getRealDelayUntilNext(1000));
+        clock.setTime(2000);
+        assertEquals(1000, clock.getRealDelayUntilNext(1000));
+        // Crossing a minute in simulated time
+        clock.setTime(59 * 1000 + 999);
+        assertEquals(1, clock.getRealDelayUntilNext(1000));
+    }
+
+    @Test
+    public void delayUntilNextIntervalIsConvertedToRealTime() {
+        TimeSource.Fixed clock = TimeSource.fixed(1500);
+        // Runs ten times as fast as real time, like a fast forwarded source
+        TimeSource fast = new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return clock.currentTimeMillis();
+            }
+
+            @Override
+            public long toRealDelay(long delayMs) {
+                return (long) Math.ceil(delayMs / 10.0);
+            }
+        };
+        assertEquals(50, fast.getRealDelayUntilNext(1000));
+        assertEquals(50, TimeSource.offset(fast, 1000).getRealDelayUntilNext(1000));
+    }
+}
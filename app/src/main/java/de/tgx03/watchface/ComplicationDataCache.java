@@ -0,0 +1,244 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.os.Parcel;
+import android.support.wearable.complications.ComplicationData;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores the last data of every complication on disk, so complications can be drawn
+ * right after a restart instead of waiting for every provider to deliver its data again.
+ * Changes get collected and written together in the background
+ */
+class ComplicationDataCache {
+
+    private static final String TAG = "WatchFace.ComplicationDataCache";
+
+    private static final String FILE_NAME = "complications";
+    private static final int MAGIC = 0x57464344;
+    private static final int VERSION = 1;
+
+    // How long changes get collected before they're written
+    private static final short WRITE_DELAY_MS = 2000;
+
+    // Flags stored with every entry
+    private static final byte FLAG_TIME_DEPENDENT = 1;
+
+    // Writes the caches of all engines one after another, so merging with the stored entries can't race
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor();
+
+    private final File file;
+    private final ComplicationData[] entries;
+    // Whether a write is already scheduled, guarded by this
+    private boolean writeScheduled = false;
+    // The time of the watchface when the last entry was stored, guarded by this
+    private long lastPut;
+
+    /**
+     * Creates a new cache
+     *
+     * @param context The context to get the storage location from
+     * @param slots   The amount of complications to store
+     */
+    ComplicationDataCache(Context context, int slots) {
+        this.file = new File(context.getNoBackupFilesDir(), FILE_NAME);
+        this.entries = new ComplicationData[slots];
+    }
+
+    /**
+     * Reads the stored data of all complications.
+     * Entries which aren't active anymore or show time dependent text get skipped,
+     * as they'd show outdated content until their provider updates them
+     *
+     * @param now The current time
+     * @return The stored data of each complication, null for complications without usable data
+     */
+    ComplicationData[] load(long now) {
+        ComplicationData[] result = new ComplicationData[entries.length];
+        byte[][] stored = new byte[entries.length][];
+        byte[] flags = new byte[entries.length];
+        if (!read(stored, flags)) {
+            return result;
+        }
+        for (int id = 0; id < stored.length; id++) {
+            if (stored[id] == null) {
+                continue;
+            }
+            if ((flags[id] & FLAG_TIME_DEPENDENT) != 0) {
+                Log.d(TAG, "Skipping time dependent complication " + id);
+                continue;
+            }
+            ComplicationData data = unmarshall(stored[id]);
+            if (data == null || !data.isActive(now)) {
+                Log.d(TAG, "Skipping expired complication " + id);
+                continue;
+            }
+            result[id] = data;
+            synchronized (this) {
+                entries[id] = data;
+            }
+        }
+        Log.d(TAG, "Loaded cached complications");
+        return result;
+    }
+
+    /**
+     * Reads the stored entries without converting them
+     *
+     * @param stored The array to put the bytes of each entry in, stays null for missing entries
+     * @param flags  The array to put the flags of each entry in
+     * @return Whether the file could be read
+     */
+    private boolean read(byte[][] stored, byte[] flags) {
+        if (!file.isFile()) {
+            Log.d(TAG, "No cached complications available");
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != BuildConfig.VERSION_CODE) {
+                Log.d(TAG, "Cached complications were written by a different version");
+                return false;
+            }
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = input.readInt();
+                byte flag = input.readByte();
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                if (id >= 0 && id < stored.length) {
+                    stored[id] = bytes;
+                    flags[id] = flag;
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Couldn't read cached complications", e);
+            Arrays.fill(stored, null);
+            return false;
+        }
+    }
+
+    /**
+     * Stores new data of a complication with the next batch
+     *
+     * @param id   The id of the complication
+     * @param data The new data
+     * @param now  The current time of the watchface
+     */
+    synchronized void put(int id, ComplicationData data, long now) {
+        entries[id] = data;
+        lastPut = now;
+        if (!writeScheduled) {
+            writeScheduled = true;
+            WRITER.schedule(this::write, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all current entries to the file.
+     * Complications this cache has no data for keep what is already stored,
+     * as other engines of the watchface share the same file
+     */
+    private void write() {
+        ComplicationData[] entries;
+        long now;
+        synchronized (this) {
+            entries = this.entries.clone();
+            now = lastPut;
+            writeScheduled = false;
+        }
+        byte[][] marshalled = new byte[entries.length][];
+        byte[] flags = new byte[entries.length];
+        read(marshalled, flags);
+        int count = 0;
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i] != null) {
+                byte[] bytes = marshall(entries[i]);
+                if (bytes != null) {
+                    boolean timeDependent = ComplicationUpdateScheduler.getNextTextChangeTime(entries[i], now) != ComplicationUpdateScheduler.NEVER;
+                    marshalled[i] = bytes;
+                    flags[i] = timeDependent ? FLAG_TIME_DEPENDENT : 0;
+                }
+            }
+            if (marshalled[i] != null) {
+                count++;
+            }
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(BuildConfig.VERSION_CODE);
+            output.writeInt(count);
+            for (int i = 0; i < entries.length; i++) {
+                if (marshalled[i] != null) {
+                    output.writeInt(i);
+                    output.writeByte(flags[i]);
+                    output.writeInt(marshalled[i].length);
+                    output.write(marshalled[i]);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't write cached complications", e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(TAG, "Couldn't replace cached complications");
+        } else {
+            Log.d(TAG, "Wrote cached complications");
+        }
+    }
+
+    /**
+     * Converts complication data to bytes.
+     * The tap action gets removed, as pending intents can't be written to a file
+     *
+     * @param data The data to convert
+     * @return The bytes of the data or null if it couldn't be converted
+     */
+    private static byte[] marshall(ComplicationData data) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            new ComplicationData.Builder(data).setTapAction(null).build().writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Couldn't convert complication data", e);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Converts bytes back to complication data
+     *
+     * @param bytes The bytes to convert
+     * @return The complication data or null if the bytes were invalid
+     */
+    private static ComplicationData unmarshall(byte[] bytes) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            return ComplicationData.CREATOR.createFromParcel(parcel);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Couldn't read complication data", e);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
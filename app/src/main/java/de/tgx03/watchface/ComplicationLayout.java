@@ -0,0 +1,153 @@
+package de.tgx03.watchface;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * The positions of all complication slots on a screen of a specific size.
+ * Taps get resolved with a grid that only gets rebuilt when the size changes
+ */
+class ComplicationLayout {
+
+    private static final String TAG = "WatchFace.ComplicationLayout";
+
+    // The amount of grid cells per side used for finding tapped complications
+    private static final int GRID_SIZE = 8;
+
+    private final ComplicationSlot[] slots;
+    private final int backgroundSlot;
+    private final int[] foregroundSlots;
+    private final Rect[] bounds;
+
+    private int cellWidth;
+    private int cellHeight;
+    private final int[][] grid = new int[GRID_SIZE * GRID_SIZE][];
+
+    /**
+     * Creates a new layout without bounds, which get set once the screen size is known
+     *
+     * @param slots All the complication slots with their ids in ascending order starting at 0
+     * @throws IllegalArgumentException Gets thrown when the ids don't match the positions of the slots
+     *                                  or more than one background complication is set
+     */
+    ComplicationLayout(ComplicationSlot... slots) throws IllegalArgumentException {
+        this.slots = slots;
+        this.bounds = new Rect[slots.length];
+        int background = -1;
+        int[] foreground = new int[slots.length];
+        int foregroundCount = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i].id != i) {
+                throw new IllegalArgumentException("Complication " + slots[i].id + " at position " + i);
+            }
+            if (slots[i].background) {
+                if (background != -1) {
+                    throw new IllegalArgumentException("Only one background complication allowed");
+                }
+                background = i;
+            } else {
+                foreground[foregroundCount++] = i;
+            }
+        }
+        this.backgroundSlot = background;
+        this.foregroundSlots = Arrays.copyOf(foreground, foregroundCount);
+        Arrays.fill(grid, new int[0]);
+    }
+
+    /**
+     * @return The amount of complication slots
+     */
+    int size() {
+        return slots.length;
+    }
+
+    /**
+     * @param id The id of the complication
+     * @return The slot of the complication
+     */
+    ComplicationSlot get(int id) {
+        return slots[id];
+    }
+
+    /**
+     * @return The id of the background complication or -1 if there is none
+     */
+    int getBackgroundSlot() {
+        return backgroundSlot;
+    }
+
+    /**
+     * @return The ids of all complications that don't get drawn as the background
+     */
+    int[] getForegroundSlots() {
+        return foregroundSlots;
+    }
+
+    /**
+     * Gets the bounds of a complication as calculated in the last layout.
+     * These aren't affected by burn in protection
+     *
+     * @param id The id of the complication
+     * @return The bounds of the complication or null if no layout has happened yet
+     */
+    Rect getBounds(int id) {
+        return bounds[id];
+    }
+
+    /**
+     * Calculates the bounds of all complications for a new screen size
+     * and rebuilds the grid used for finding tapped complications
+     *
+     * @param width  The width of the screen
+     * @param height The height of the screen
+     */
+    void layout(int width, int height) {
+        Log.d(TAG, "Calculating complication bounds");
+        for (int i = 0; i < slots.length; i++) {
+            bounds[i] = slots[i].calculateBounds(width, height);
+        }
+
+        cellWidth = Math.max(1, (width + GRID_SIZE - 1) / GRID_SIZE);
+        cellHeight = Math.max(1, (height + GRID_SIZE - 1) / GRID_SIZE);
+        int[] cellSlots = new int[foregroundSlots.length];
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int column = 0; column < GRID_SIZE; column++) {
+                Rect cell = new Rect(column * cellWidth, row * cellHeight, (column + 1) * cellWidth, (row + 1) * cellHeight);
+                int count = 0;
+                for (int id : foregroundSlots) {
+                    if (Rect.intersects(cell, bounds[id])) {
+                        cellSlots[count++] = id;
+                    }
+                }
+                grid[row * GRID_SIZE + column] = Arrays.copyOf(cellSlots, count);
+            }
+        }
+    }
+
+    /**
+     * Finds out which complication is located at a position
+     * Ignores the background complication
+     *
+     * @param x The x coordinate of the position
+     * @param y The y coordinate of the position
+     * @return The ID of the complication or -1 if there is none
+     */
+    int findSlot(int x, int y) {
+        if (x < 0 || y < 0 || cellWidth == 0) {
+            return -1;
+        }
+        int column = x / cellWidth;
+        int row = y / cellHeight;
+        if (column >= GRID_SIZE || row >= GRID_SIZE) {
+            return -1;
+        }
+        for (int id : grid[row * GRID_SIZE + column]) {
+            if (bounds[id].contains(x, y)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,72 @@
+package de.tgx03.watchface;
+
+import android.graphics.Rect;
+
+/**
+ * A place on the watchface a complication can be drawn in.
+ * The position is stored relative to the size of the screen
+ */
+class ComplicationSlot {
+
+    /**
+     * The id of this complication, which also is its position in the layout
+     */
+    final int id;
+    /**
+     * The resource of the drawable used to draw this complication
+     */
+    final int drawable;
+    /**
+     * Whether this complication gets drawn behind everything else and can't be tapped
+     */
+    final boolean background;
+    /**
+     * All the complication types supported by this slot
+     */
+    final int[] supportedTypes;
+
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+    // Whether the position is relative to the smaller side of the screen instead of width and height
+    private final boolean square;
+
+    /**
+     * Creates a new complication slot
+     *
+     * @param id             The id of the complication
+     * @param drawable       The resource of the drawable to draw the complication with
+     * @param background     Whether this is a background complication
+     * @param left           The left boundary relative to the screen
+     * @param top            The top boundary relative to the screen
+     * @param right          The right boundary relative to the screen
+     * @param bottom         The bottom boundary relative to the screen
+     * @param square         Whether the boundaries are relative to the smaller side of the screen
+     * @param supportedTypes The complication types this slot supports
+     */
+    ComplicationSlot(int id, int drawable, boolean background, float left, float top, float right, float bottom, boolean square, int... supportedTypes) {
+        this.id = id;
+        this.drawable = drawable;
+        this.background = background;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.square = square;
+        this.supportedTypes = supportedTypes;
+    }
+
+    /**
+     * Calculates where this complication is located on a screen of the given size
+     *
+     * @param width  The width of the screen
+     * @param height The height of the screen
+     * @return The bounds of this complication
+     */
+    Rect calculateBounds(int width, int height) {
+        int horizontal = square ? Math.min(width, height) : width;
+        int vertical = square ? Math.min(width, height) : height;
+        return new Rect(Math.round(left * horizontal), Math.round(top * vertical), Math.round(right * horizontal), Math.round(bottom * vertical));
+    }
+}
@@ -0,0 +1,127 @@
+package de.tgx03.watchface;
+
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of when the displayed text or visibility of each complication changes next
+ * so complications only get redrawn when their content actually changed
+ */
+class ComplicationUpdateScheduler {
+
+    private static final String TAG = "WatchFace.ComplicationUpdateScheduler";
+
+    /**
+     * Returned when no complication will change on its own
+     */
+    static final long NEVER = Long.MAX_VALUE;
+
+    private final ComplicationData[] data;
+    private final long[] nextChange;
+
+    /**
+     * Creates a new scheduler
+     *
+     * @param slots The amount of complication slots to keep track of
+     */
+    ComplicationUpdateScheduler(int slots) {
+        data = new ComplicationData[slots];
+        nextChange = new long[slots];
+        Arrays.fill(nextChange, NEVER);
+    }
+
+    /**
+     * Sets new data for a complication and calculates when its text changes next
+     *
+     * @param slot The id of the complication
+     * @param data The new data of the complication
+     * @param now  The current time
+     */
+    void update(int slot, ComplicationData data, long now) {
+        this.data[slot] = data;
+        nextChange[slot] = getNextChangeTime(data, now);
+        if (nextChange[slot] != NEVER) {
+            Log.d(TAG, "Complication " + slot + " changes in " + (nextChange[slot] - now) + "ms");
+        }
+    }
+
+    /**
+     * Tells when the next complication changes its text
+     *
+     * @return The time of the next change or {@link #NEVER} if no complication is time dependent
+     */
+    long getNextChangeTime() {
+        long next = NEVER;
+        for (long change : nextChange) {
+            next = Math.min(next, change);
+        }
+        return next;
+    }
+
+    /**
+     * Marks all complications whose text changed until now and calculates their next change
+     *
+     * @param now   The current time
+     * @param dirty The array in which the changed complications get marked
+     * @return Whether any complication changed
+     */
+    boolean markDue(long now, boolean[] dirty) {
+        boolean due = false;
+        for (int i = 0; i < nextChange.length; i++) {
+            if (nextChange[i] <= now) {
+                dirty[i] = true;
+                due = true;
+                nextChange[i] = getNextChangeTime(data[i], now);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * Finds out when a complication changes next, either because its text changes
+     * or because it starts or stops being shown
+     *
+     * @param data The data of the complication
+     * @param now  The time from which to search for the next change
+     * @return The time of the next change or {@link #NEVER} if it doesn't change
+     */
+    static long getNextChangeTime(ComplicationData data, long now) {
+        if (data == null) {
+            return NEVER;
+        }
+        long next = getNextTextChangeTime(data, now);
+        if (data.getStartDateTimeMillis() > now) {
+            next = Math.min(next, data.getStartDateTimeMillis());
+        }
+        if (data.getEndDateTimeMillis() > now) {
+            next = Math.min(next, data.getEndDateTimeMillis());
+        }
+        return next;
+    }
+
+    /**
+     * Finds out when any text of a complication changes next
+     *
+     * @param data The data of the complication
+     * @param now  The time from which to search for the next change
+     * @return The time of the next change or {@link #NEVER} if the text doesn't change
+     */
+    static long getNextTextChangeTime(ComplicationData data, long now) {
+        if (data == null) {
+            return NEVER;
+        }
+        long next = NEVER;
+        next = Math.min(next, getNextChangeTime(data.getShortText(), now));
+        next = Math.min(next, getNextChangeTime(data.getShortTitle(), now));
+        next = Math.min(next, getNextChangeTime(data.getLongText(), now));
+        next = Math.min(next, getNextChangeTime(data.getLongTitle(), now));
+        return next;
+    }
+
+    private static long getNextChangeTime(ComplicationText text, long now) {
+        return text != null ? text.getNextChangeTime(now) : NEVER;
+    }
+}
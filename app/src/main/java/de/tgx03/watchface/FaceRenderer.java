@@ -0,0 +1,831 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static de.tgx03.watchface.WatchFace.complicationsInAmbient;
+import static de.tgx03.watchface.WatchFace.emptyComplications;
+
+/**
+ * Draws the watchface with all its complications.
+ * This doesn't depend on the service, so the watchface can also be drawn outside of a running watch
+ */
+class FaceRenderer {
+
+    private static final String TAG = "WatchFace.FaceRenderer";
+
+    private final Context context;
+    // Gets called when the renderer needs to be drawn again
+    private final Runnable invalidator;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // The device features
+    private boolean requiredBurnInProtection = true;   // True by default to not damage screen before actual data provided
+    private boolean lastMovedRight = false; // Used to alternatingly move stuff right or left
+    private Random burnInRandom = new Random(); // Decides how far stuff gets moved
+    private boolean ambient = false;
+
+    private Integer screenWidth;
+    private Integer screenHeight;
+
+    // Values for time position and size
+    private float timeX;
+    private float timeY;
+    private float timeXBurnIn;
+    private static final float DEFAULT_TIME_Y = 0.47f;
+    private static final float DEFAULT_TIME_SIZE = 0.3f;
+    private static final float DEFAULT_SECONDS_SIZE = 0.09f;
+
+    // Values for seconds position and size
+    private float secondsX;
+
+    // Values for date position and size
+    private String lastDate;
+    private float dateX;
+    private float dateY;
+    private float dateXBurnIn;
+    private static final float DEFAULT_DATE_VERTICAL_OFFSET = 0.04f;
+    private static final float DEFAULT_DATE_SIZE = 0.07f;
+
+    // Styles for elements
+    private final Paint background = new Paint();
+    private final Paint timePaint = new Paint();
+    private final Paint timePaintAmbient = new Paint();
+    private final Paint datePaint = new Paint();
+    private final Paint datePaintAmbient = new Paint();
+    private final Paint secondsPaint = new Paint();
+    // Swaps in the custom fonts once they're loaded, kept here as the font cache only holds it weakly
+    private final Runnable fontListener = this::onFontsLoaded;
+
+    private final Calendar calendar = Calendar.getInstance();
+    // The language the complications were last drawn in
+    private Locale locale = Locale.getDefault();
+
+    // The complications and where they're located
+    private final ComplicationLayout layout;
+    private final ComplicationDrawable[] complicationDrawables;
+    private final ComplicationData[] complicationData;
+    // The foreground complications which currently have something to draw
+    private int[] drawnComplications = new int[0];
+    private boolean drawsEmptyComplications = emptyComplications;
+
+    private boolean validBackground = false;
+
+    // Layer holding the background and the complications, so they only get redrawn when they change
+    private Bitmap complicationLayer;
+    private Canvas complicationCanvas;
+    private boolean layerInvalid = true;
+    private final boolean[] dirtyComplications;
+    private final ComplicationUpdateScheduler complicationScheduler;
+    // Set while the renderer itself changes the complications, so their invalidations get ignored
+    private boolean updatingComplications = false;
+    // Whether the complication layer has been drawn since the last layout
+    private boolean layerDrawn = false;
+    // Increases whenever anything in the complication layer gets redrawn
+    private int layerGeneration = 0;
+
+    // The last frame of a previous run, shown instead of the complication layer until all complications received data
+    private Bitmap snapshot;
+    private final boolean[] receivedData;
+    private int missingData;
+
+    /**
+     * Creates a new renderer and inflates all the complications
+     *
+     * @param context     The context to load resources from
+     * @param slots       The complication slots to draw
+     * @param invalidator Gets called when the watchface needs to be redrawn, for example when a complication loaded its images
+     */
+    FaceRenderer(Context context, ComplicationSlot[] slots, Runnable invalidator) {
+        Log.d(TAG, "Initializing renderer");
+        this.context = context;
+        this.invalidator = invalidator;
+        this.layout = new ComplicationLayout(slots);
+        this.complicationDrawables = new ComplicationDrawable[layout.size()];
+        this.complicationData = new ComplicationData[layout.size()];
+        this.dirtyComplications = new boolean[layout.size()];
+        this.complicationScheduler = new ComplicationUpdateScheduler(layout.size());
+        this.receivedData = new boolean[layout.size()];
+        this.missingData = layout.size();
+
+        background.setColor(Color.BLACK);
+
+        // Uses the default typefaces until the custom fonts are loaded
+        FontCache.addListener(fontListener);
+        FontCache.load(context);
+
+        FontCache.applyStyle(context, FontCache.Style.TIME, timePaint);
+        timePaintAmbient.set(timePaint);
+
+        FontCache.applyStyle(context, FontCache.Style.SECONDS, secondsPaint);
+
+        FontCache.applyStyle(context, FontCache.Style.DATE, datePaint);
+        datePaintAmbient.set(datePaint);
+        datePaintAmbient.setColor(Color.WHITE);
+
+        initializeComplications();
+    }
+
+    /**
+     * Lays out the watchface for a new screen size
+     *
+     * @param width  The width of the screen
+     * @param height The height of the screen
+     */
+    void setSize(int width, int height) {
+        screenHeight = height;
+        screenWidth = width;
+
+        layoutText(width, height);
+
+        complicationLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        complicationCanvas = new Canvas(complicationLayer);
+        layerInvalid = true;
+        layerDrawn = false;
+
+        layout.layout(width, height);
+        restoreCoordinates();
+    }
+
+    /**
+     * Calculates the size and position of time and date
+     *
+     * @param width  The width of the screen
+     * @param height The height of the screen
+     */
+    private void layoutText(int width, int height) {
+        int smaller = Math.min(width, height);
+        float timeSize = DEFAULT_TIME_SIZE * smaller;
+        timePaint.setTextSize(timeSize);
+        timePaintAmbient.setTextSize(timeSize);
+        secondsPaint.setTextSize(DEFAULT_SECONDS_SIZE * smaller);
+        float timeLength = timePaint.measureText("12:34");
+        timeX = (float) (width / 2) - (timeLength / 2);
+        timeY = height * DEFAULT_TIME_Y;
+        dateY = (float) (height / 2) + DEFAULT_DATE_VERTICAL_OFFSET * height;
+        secondsX = timeLength + timeX;
+        float dateSize = DEFAULT_DATE_SIZE * width;
+        datePaint.setTextSize(dateSize);
+        datePaintAmbient.setTextSize(dateSize);
+        lastDate = null;
+    }
+
+    /**
+     * Switches all texts to the custom fonts once they're loaded
+     */
+    private void onFontsLoaded() {
+        Log.d(TAG, "Switching to loaded fonts");
+        timePaint.setTypeface(FontCache.getTypeface(FontCache.Style.TIME));
+        timePaintAmbient.setTypeface(FontCache.getTypeface(FontCache.Style.TIME));
+        secondsPaint.setTypeface(FontCache.getTypeface(FontCache.Style.SECONDS));
+        datePaint.setTypeface(FontCache.getTypeface(FontCache.Style.DATE));
+        datePaintAmbient.setTypeface(FontCache.getTypeface(FontCache.Style.DATE));
+        if (hasSize()) {
+            layoutText(screenWidth, screenHeight);
+        }
+        invalidator.run();
+    }
+
+    /**
+     * @return Whether a screen size has been set
+     */
+    boolean hasSize() {
+        return screenWidth != null && screenHeight != null;
+    }
+
+    /**
+     * @return The width of the screen or null if not yet known
+     */
+    Integer getWidth() {
+        return screenWidth;
+    }
+
+    /**
+     * @return The height of the screen or null if not yet known
+     */
+    Integer getHeight() {
+        return screenHeight;
+    }
+
+    /**
+     * Sets the features of the screen the watchface gets drawn on
+     *
+     * @param burnInProtection Whether elements need to be shifted in ambient mode
+     * @param lowBitAmbient    Whether the screen only supports few colors in ambient mode
+     */
+    void setProperties(boolean burnInProtection, boolean lowBitAmbient) {
+        requiredBurnInProtection = burnInProtection;
+        // Move complications back in place in case they were shifted before burn in protection was known
+        if (!requiredBurnInProtection) {
+            restoreCoordinates();
+        }
+
+        // Enable or disable anti alias for time and date depending on whether in low bit ambient
+        if (lowBitAmbient) {
+            timePaintAmbient.setAntiAlias(false);
+            datePaintAmbient.setAntiAlias(false);
+        } else {
+            timePaintAmbient.setAntiAlias(true);
+            datePaintAmbient.setAntiAlias(true);
+        }
+        updatingComplications = true;
+        for (ComplicationDrawable drawable : complicationDrawables) {
+            drawable.setLowBitAmbient(lowBitAmbient);
+        }
+        updatingComplications = false;
+    }
+
+    /**
+     * Makes the burn in protection move elements by the same offsets every time,
+     * so frames drawn outside of a watch can be compared between runs
+     *
+     * @param seed The seed for the offsets
+     */
+    void setBurnInSeed(long seed) {
+        burnInRandom = new Random(seed);
+        lastMovedRight = false;
+    }
+
+    /**
+     * Switches between ambient and interactive mode
+     *
+     * @param inAmbientMode Whether the watchface now is in ambient mode
+     */
+    void setAmbient(boolean inAmbientMode) {
+        ambient = inAmbientMode;
+        if (requiredBurnInProtection && !inAmbientMode) {
+            restoreCoordinates();
+        }
+        updatingComplications = true;
+        for (ComplicationDrawable drawable : complicationDrawables) {
+            drawable.setInAmbientMode(inAmbientMode);
+        }
+        updatingComplications = false;
+    }
+
+    /**
+     * @return Whether this currently draws in ambient mode
+     */
+    boolean isAmbient() {
+        return ambient;
+    }
+
+    /**
+     * Sets the time zone the time, date and complications get shown in.
+     * The complications get redrawn if it changed, as they might show local times
+     *
+     * @param timeZone The new time zone
+     */
+    void setTimeZone(TimeZone timeZone) {
+        if (!timeZone.getID().equals(calendar.getTimeZone().getID())) {
+            Log.d(TAG, "Time zone changed to " + timeZone.getID());
+            layerInvalid = true;
+        }
+        calendar.setTimeZone(timeZone);
+        lastDate = null;
+    }
+
+    /**
+     * Sets the language the date and complications get shown in.
+     * The complications get redrawn if it changed, as their texts might be localized
+     *
+     * @param locale The new language
+     */
+    void setLocale(Locale locale) {
+        if (!locale.equals(this.locale)) {
+            Log.d(TAG, "Locale changed to " + locale);
+            this.locale = locale;
+            layerInvalid = true;
+            lastDate = null;
+        }
+    }
+
+    /**
+     * @return The ids of all complications this renderer draws
+     */
+    int[] getComplicationIds() {
+        int[] ids = new int[complicationDrawables.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    /**
+     * Sets new data for a complication
+     *
+     * @param id   The id of the complication
+     * @param data The new data
+     * @param now  The current time
+     */
+    void setComplicationData(int id, ComplicationData data, long now) {
+        complicationDrawables[id].setComplicationData(data);
+        complicationData[id] = data;
+        updateDrawnComplications();
+        if (id == layout.getBackgroundSlot()) {
+            validBackground = data != null && data.getType() == ComplicationData.TYPE_LARGE_IMAGE;
+        }
+        complicationScheduler.update(id, data, now);
+        dirtyComplications[id] = true;
+        if (!receivedData[id]) {
+            receivedData[id] = true;
+            missingData--;
+            if (missingData == 0 && snapshot != null) {
+                Log.d(TAG, "All complications received, discarding snapshot");
+                clearSnapshot();
+            }
+        }
+    }
+
+    /**
+     * @param id The id of the complication
+     * @return The last data set for the complication or null if there is none
+     */
+    ComplicationData getComplicationData(int id) {
+        return complicationData[id];
+    }
+
+    /**
+     * Tells when a complication changes next
+     *
+     * @return The time of the next change or {@link ComplicationUpdateScheduler#NEVER}
+     */
+    long getNextComplicationChange() {
+        return complicationScheduler.getNextChangeTime();
+    }
+
+    /**
+     * Sets the last frame of a previous run, which gets shown instead of the background and complications
+     * until all of them received their data
+     *
+     * @param snapshot The last frame, which only gets used if it matches the size of the screen
+     */
+    void setSnapshot(Bitmap snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return Whether all complications received their data
+     */
+    boolean isWarm() {
+        return missingData == 0;
+    }
+
+    /**
+     * Stops showing the last frame of a previous run
+     */
+    void clearSnapshot() {
+        if (snapshot != null) {
+            snapshot.recycle();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Copies the current background and complications if they show the actual state of the watchface
+     * and changed since the last copy, so they can be stored as a snapshot
+     *
+     * @param now             The current time
+     * @param savedGeneration The generation of the layer when it was last copied
+     * @return A copy of the complication layer or null if it isn't complete yet or didn't change
+     */
+    Bitmap copyLayer(long now, int savedGeneration) {
+        if (!layerDrawn || !isWarm()) {
+            return null;
+        }
+        updateInteractiveLayer(now);
+        if (layerGeneration == savedGeneration) {
+            return null;
+        }
+        return complicationLayer.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    /**
+     * Checks whether any complication changes on its own over time, either its text or whether it's shown.
+     * A snapshot of such complications would show outdated content after a restart
+     *
+     * @param now The current time
+     * @return Whether any complication is time dependent
+     */
+    boolean hasTimeDependentComplications(long now) {
+        complicationScheduler.markDue(now, dirtyComplications);
+        return complicationScheduler.getNextChangeTime() != ComplicationUpdateScheduler.NEVER;
+    }
+
+    /**
+     * @return The current generation of the complication layer, which changes whenever its content changed
+     */
+    int getLayerGeneration() {
+        return layerGeneration;
+    }
+
+    /**
+     * Marks all complications whose text changed until now for redrawing
+     *
+     * @param now The current time
+     * @return Whether any complication changed
+     */
+    boolean markComplicationsDue(long now) {
+        return complicationScheduler.markDue(now, dirtyComplications);
+    }
+
+    /**
+     * Checks whether the interactive complication layer shows the current state,
+     * so switching to interactive mode only needs to copy it
+     *
+     * @param now The current time
+     * @return Whether the layer is up to date
+     */
+    boolean isLayerCurrent(long now) {
+        complicationScheduler.markDue(now, dirtyComplications);
+        if (!layerDrawn || layerInvalid || drawsEmptyComplications != emptyComplications) {
+            return false;
+        }
+        for (boolean dirty : dirtyComplications) {
+            if (dirty) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Brings everything drawn in interactive mode up to date while in ambient mode,
+     * so the first frame after switching back only has to copy the complication layer.
+     * The complications get switched to interactive mode for the time of drawing them
+     *
+     * @param now The current time
+     * @return Whether anything had to be redrawn
+     */
+    boolean prewarm(long now) {
+        if (!ambient || !hasSize() || snapshot != null) {
+            return false;
+        }
+        calendar.setTimeInMillis(now);
+        updateDatePosition(createDate(), screenWidth);
+        if (isLayerCurrent(now)) {
+            return false;
+        }
+        Log.d(TAG, "Prewarming interactive layer");
+        updateInteractiveLayer(now);
+        return true;
+    }
+
+    /**
+     * Redraws the changed complications in the complication layer the way they look in interactive mode.
+     * In ambient mode the complications get switched to interactive mode
+     * and moved back to their original position for the time of drawing them
+     *
+     * @param now The current time
+     */
+    private void updateInteractiveLayer(long now) {
+        if (drawsEmptyComplications != emptyComplications) {
+            updateDrawnComplications();
+            layerInvalid = true;
+        }
+        if (!ambient) {
+            updateComplicationLayer(now);
+            return;
+        }
+        restoreCoordinates();
+        updatingComplications = true;
+        for (ComplicationDrawable drawable : complicationDrawables) {
+            drawable.setInAmbientMode(false);
+        }
+        updateComplicationLayer(now);
+        for (ComplicationDrawable drawable : complicationDrawables) {
+            drawable.setInAmbientMode(true);
+        }
+        updatingComplications = false;
+    }
+
+    /**
+     * Draws the watchface
+     *
+     * @param canvas The canvas to draw on
+     * @param bounds The bounds of the screen
+     * @param now    The time to show
+     */
+    void draw(Canvas canvas, Rect bounds, long now) {
+        // Get basic data to draw
+        calendar.setTimeInMillis(now);
+        complicationScheduler.markDue(now, dirtyComplications);
+        if (drawsEmptyComplications != emptyComplications) {
+            updateDrawnComplications();
+            layerInvalid = true;
+        }
+        String time = createTime();
+        String date = createDate();
+        updateDatePosition(date, bounds.right);
+        // Draw the background and the complications from their layer if not in ambient
+        if (!ambient && snapshot != null && snapshot.getWidth() == screenWidth && snapshot.getHeight() == screenHeight) {
+            Log.d(TAG, "Drawing snapshot");
+            canvas.drawBitmap(snapshot, 0, 0, null);
+        } else if (!ambient) {
+            updateComplicationLayer(now);
+            canvas.drawBitmap(complicationLayer, 0, 0, null);
+        } else {
+            // Clear the background
+            Log.d(TAG, "Clearing background");
+            canvas.drawRect(bounds, background);
+        }
+        // Draw default ambient
+        if (ambient && !requiredBurnInProtection) {
+            Log.d(TAG, "Drawing ambient, no burn in protection");
+            canvas.drawText(time, timeX, timeY, timePaintAmbient);
+            canvas.drawText(date, dateX, dateY, datePaintAmbient);
+            // Draw ambient with shifting coordinates
+        } else if (ambient) {
+            Log.d(TAG, "Drawing ambient, with burn in protection");
+            randomizeCoordinates();
+            canvas.drawText(time, timeXBurnIn, timeY, timePaintAmbient);
+            canvas.drawText(date, dateXBurnIn, dateY, datePaintAmbient);
+        } else {
+            // Draw active
+            Log.d(TAG, "Drawing active");
+            String second = formatLeadingZeroes(calendar.get(Calendar.SECOND));
+            canvas.drawText(time, timeX, timeY, timePaint);
+            canvas.drawText(date, dateX, dateY, datePaint);
+            canvas.drawText(second, secondsX, timeY, secondsPaint);
+        }
+        // Draw complications, in interactive mode they're already part of the layer
+        if (ambient && complicationsInAmbient) {
+            drawComplications(canvas, now);
+        }
+    }
+
+    /**
+     * Finds out which complication is located at a position
+     * Ignores the background complication
+     *
+     * @param x The x coordinate of the position
+     * @param y The y coordinate of the position
+     * @return The ID of the complication or -1 if there is none
+     */
+    int findComplication(int x, int y) {
+        return layout.findSlot(x, y);
+    }
+
+    /**
+     * Creates an array telling which foreground complications are set and which aren't
+     *
+     * @return Which complications are set
+     */
+    boolean[] complicationLocations() {
+        int[] foreground = layout.getForegroundSlots();
+        boolean[] rect = new boolean[foreground.length];
+        for (int i = 0; i < foreground.length; i++) {
+            ComplicationData data = complicationData[foreground[i]];
+            rect[i] = data != null && data.getType() != ComplicationData.TYPE_NOT_CONFIGURED && data.getType() != ComplicationData.TYPE_EMPTY;
+        }
+        return rect;
+    }
+
+    /**
+     * Offsets the complications and date and time by a random offset
+     * The complications get directly offset
+     * For date and time it is necessary to use the corresponding burn in variable,
+     * the originals don't get changed
+     */
+    private void randomizeCoordinates() {
+        int offset = (int) Math.round(burnInRandom.nextDouble() * 10);
+        Log.d(TAG, "Randomizing coordinates by " + offset);
+        if (lastMovedRight) {
+            offset = -offset;
+        }
+        if (hasSize()) {
+            updatingComplications = true;
+            for (int id : layout.getForegroundSlots()) {
+                Rect bounds = new Rect(layout.getBounds(id));
+                bounds.offset(offset, 0);
+                complicationDrawables[id].setBounds(bounds);
+            }
+            updatingComplications = false;
+        }
+        lastMovedRight = !lastMovedRight;
+
+        timeXBurnIn = timeX + offset;
+        dateXBurnIn = dateX + offset;
+    }
+
+    /**
+     * Restores the original coordinates for complications
+     * For date and time, simply don't use the offset variables
+     */
+    private void restoreCoordinates() {
+        Log.d(TAG, "restoring Coordinates");
+        if (!hasSize()) {
+            return;
+        }
+        updatingComplications = true;
+        for (int i = 0; i < complicationDrawables.length; i++) {
+            complicationDrawables[i].setBounds(layout.getBounds(i));
+        }
+        updatingComplications = false;
+    }
+
+    /**
+     * Re-calculates the position of the date if it has changed since the last draw
+     *
+     * @param date  The date to show
+     * @param width The width of the screen
+     */
+    private void updateDatePosition(String date, int width) {
+        if (!date.equals(lastDate)) {
+            String day = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.LONG, Locale.getDefault()) + " ";
+            float lengthWODash = datePaint.measureText(day);
+            float lengthWDash = datePaint.measureText(day + "|");
+            float average = (lengthWDash + lengthWODash) / 2;
+            dateX = (float) (width / 2) - average;
+            lastDate = date;
+        }
+    }
+
+    /**
+     * Creates a string of the current time in 24h format
+     * Because fuck AM/PM
+     *
+     * @return A string representing the time
+     */
+    private String createTime() {
+        String hour = formatLeadingZeroes(calendar.get(Calendar.HOUR_OF_DAY));
+        String minute = formatLeadingZeroes(calendar.get(Calendar.MINUTE));
+        return hour + ":" + minute;
+    }
+
+    /**
+     * Creates the string to be shown as date consisting of the weekday, a stroke and the actual date
+     *
+     * @return A string of the current day and date
+     */
+    private String createDate() {
+        String day = formatLeadingZeroes(calendar.get(Calendar.DAY_OF_MONTH));
+        String month = formatLeadingZeroes(calendar.get(Calendar.MONTH) + 1);
+        String year = String.valueOf(calendar.get(Calendar.YEAR));
+        String dayName = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.LONG, Locale.getDefault());
+        return dayName + " | " + day + "/" + month + "/" + year;
+    }
+
+    /**
+     * Creates a string of a numerical value with 2 leading zeroes
+     *
+     * @param numbers The value to format
+     * @return A string formatted to 2 leading zeroes
+     */
+    private String formatLeadingZeroes(long numbers) {
+        return String.format("%02d", numbers);
+    }
+
+    /**
+     * Creates the complications
+     */
+    private void initializeComplications() {
+        Log.d(TAG, "Initializing complications");
+
+        for (int i = 0; i < complicationDrawables.length; i++) {
+            complicationDrawables[i] = (ComplicationDrawable) context.getDrawable(layout.get(i).drawable);
+            complicationDrawables[i].setContext(context.getApplicationContext());
+            complicationDrawables[i].setCallback(new ComplicationCallback(i));
+        }
+
+        updateDrawnComplications();
+    }
+
+    /**
+     * Draws the foreground complications on the provided canvas
+     *
+     * @param canvas The canvas the complications should be drawn on
+     * @param time   The time the complications should use when drawing
+     */
+    private void drawComplications(Canvas canvas, long time) {
+        for (int id : drawnComplications) {
+            complicationDrawables[id].draw(canvas, time);
+        }
+    }
+
+    /**
+     * Collects the foreground complications that have something to draw,
+     * so empty complications don't have to be checked on every frame
+     */
+    private void updateDrawnComplications() {
+        drawsEmptyComplications = emptyComplications;
+        int[] foreground = layout.getForegroundSlots();
+        int[] drawn = new int[foreground.length];
+        int count = 0;
+        for (int id : foreground) {
+            if (shouldDrawComplication(id)) {
+                drawn[count++] = id;
+            }
+        }
+        drawnComplications = Arrays.copyOf(drawn, count);
+    }
+
+    /**
+     * Checks whether a foreground complication should be drawn with its current data
+     *
+     * @param id The id of the complication
+     * @return Whether the complication should be drawn
+     */
+    private boolean shouldDrawComplication(int id) {
+        return emptyComplications || (complicationData[id] != null && complicationData[id].getType() != ComplicationData.TYPE_EMPTY && complicationData[id].getType() != ComplicationData.TYPE_NO_DATA && complicationData[id].getType() != ComplicationData.TYPE_NOT_CONFIGURED);
+    }
+
+    /**
+     * Redraws all complications in the complication layer that changed since it was last drawn.
+     * When the background changed, the whole layer gets redrawn,
+     * otherwise only the areas of the changed complications
+     *
+     * @param time The time the complications should use when drawing
+     */
+    private void updateComplicationLayer(long time) {
+        int background = layout.getBackgroundSlot();
+        if (layerInvalid || (background != -1 && dirtyComplications[background])) {
+            Log.d(TAG, "Redrawing complication layer");
+            drawComplicationArea(null, time);
+            Arrays.fill(dirtyComplications, false);
+            layerInvalid = false;
+            layerDrawn = true;
+            layerGeneration++;
+        } else {
+            for (int id : layout.getForegroundSlots()) {
+                if (dirtyComplications[id]) {
+                    Log.d(TAG, "Redrawing complication " + id);
+                    drawComplicationArea(complicationDrawables[id].getBounds(), time);
+                    dirtyComplications[id] = false;
+                    layerGeneration++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws the background and all complications overlapping an area onto the complication layer
+     *
+     * @param area The area to redraw or null to redraw the whole layer
+     * @param time The time the complications should use when drawing
+     */
+    private void drawComplicationArea(Rect area, long time) {
+        complicationCanvas.save();
+        if (area != null) {
+            complicationCanvas.clipRect(area);
+        }
+        if (validBackground) {
+            complicationDrawables[layout.getBackgroundSlot()].draw(complicationCanvas, time);
+        } else {
+            complicationCanvas.drawPaint(background);
+        }
+        for (int id : drawnComplications) {
+            if (area == null || Rect.intersects(area, complicationDrawables[id].getBounds())) {
+                complicationDrawables[id].draw(complicationCanvas, time);
+            }
+        }
+        complicationCanvas.restore();
+    }
+
+    /**
+     * Marks a complication for redrawing when it invalidates itself,
+     * for example after loading its images
+     */
+    private class ComplicationCallback implements Drawable.Callback {
+
+        private final int id;
+
+        ComplicationCallback(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public void invalidateDrawable(Drawable who) {
+            if (!updatingComplications) {
+                dirtyComplications[id] = true;
+                invalidator.run();
+            }
+        }
+
+        @Override
+        public void scheduleDrawable(Drawable who, Runnable what, long when) {
+            handler.postAtTime(what, who, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(Drawable who, Runnable what) {
+            handler.removeCallbacks(what, who);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads the typefaces of the watchface once for the whole process and shares them between all engines.
+ * The fonts get loaded in the background, until they're ready the default typefaces get used.
+ * Also keeps a prepared paint for every text style, which renderers copy instead of configuring their own
+ */
+final class FontCache {
+
+    private static final String TAG = "WatchFace.FontCache";
+
+    /**
+     * The different texts drawn by the watchface
+     */
+    enum Style {
+        TIME(R.string.time_font, R.color.time, Typeface.DEFAULT_BOLD),
+        SECONDS(R.string.seconds_font, R.color.seconds, Typeface.DEFAULT),
+        DATE(R.string.date_font, R.color.date, Typeface.DEFAULT);
+
+        // The resource of the asset path of the font, empty for the default
+        private final int font;
+        private final int color;
+        private final Typeface fallback;
+
+        Style(int font, int color, Typeface fallback) {
+            this.font = font;
+            this.color = color;
+            this.fallback = fallback;
+        }
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    // The loaded typefaces by style, null where the fallback gets used
+    private static final Typeface[] TYPEFACES = new Typeface[Style.values().length];
+    // The prepared paints by style
+    private static final Paint[] PAINTS = new Paint[Style.values().length];
+    // Gets notified on the main thread once the fonts are loaded
+    private static final List<WeakReference<Runnable>> LISTENERS = new ArrayList<>();
+    private static CompletableFuture<Void> loading;
+    // Whether the loaded typefaces are available, listeners added afterwards don't get notified
+    private static boolean loaded = false;
+
+    private FontCache() {
+    }
+
+    /**
+     * Starts loading the fonts if that hasn't happened yet
+     *
+     * @param context The context to load the fonts from
+     * @return A future that completes once the fonts are loaded
+     */
+    static synchronized CompletableFuture<Void> load(Context context) {
+        if (loading != null) {
+            return loading;
+        }
+        Context application = context.getApplicationContext();
+        String[] paths = new String[Style.values().length];
+        boolean any = false;
+        for (Style style : Style.values()) {
+            paths[style.ordinal()] = application.getString(style.font);
+            any |= !paths[style.ordinal()].isEmpty();
+        }
+        if (!any) {
+            Log.d(TAG, "No custom fonts configured");
+            loaded = true;
+            LISTENERS.clear();
+            loading = CompletableFuture.completedFuture(null);
+            return loading;
+        }
+        AssetManager assets = application.getAssets();
+        loading = CompletableFuture.runAsync(() -> {
+            Typeface[] typefaces = new Typeface[paths.length];
+            for (int i = 0; i < paths.length; i++) {
+                if (!paths[i].isEmpty()) {
+                    try {
+                        typefaces[i] = Typeface.createFromAsset(assets, paths[i]);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Couldn't load font " + paths[i], e);
+                    }
+                }
+            }
+            List<Runnable> listeners;
+            synchronized (FontCache.class) {
+                for (int i = 0; i < typefaces.length; i++) {
+                    TYPEFACES[i] = typefaces[i];
+                    if (PAINTS[i] != null && typefaces[i] != null) {
+                        PAINTS[i].setTypeface(typefaces[i]);
+                    }
+                }
+                loaded = true;
+                listeners = takeListeners();
+            }
+            Log.d(TAG, "Loaded fonts");
+            // Only listeners registered before this point get notified, later ones already got the loaded typefaces
+            MAIN_HANDLER.post(() -> {
+                for (Runnable listener : listeners) {
+                    listener.run();
+                }
+            });
+        }, runnable -> new Thread(runnable, TAG).start());
+        return loading;
+    }
+
+    /**
+     * Gives the typeface of a style, which is the fallback until the fonts are loaded
+     *
+     * @param style The style of the text
+     * @return The typeface to use
+     */
+    static synchronized Typeface getTypeface(Style style) {
+        Typeface typeface = TYPEFACES[style.ordinal()];
+        return typeface != null ? typeface : style.fallback;
+    }
+
+    /**
+     * Sets a paint to the prepared style, including color, anti alias and the current typeface.
+     * The text size stays up to the renderer
+     *
+     * @param context The context to load the colors from
+     * @param style   The style of the text
+     * @param paint   The paint to set up
+     */
+    static synchronized void applyStyle(Context context, Style style, Paint paint) {
+        Paint prepared = PAINTS[style.ordinal()];
+        if (prepared == null) {
+            prepared = new Paint();
+            prepared.setColor(context.getResources().getColor(style.color, context.getTheme()));
+            prepared.setTypeface(getTypeface(style));
+            prepared.setAntiAlias(true);
+            PAINTS[style.ordinal()] = prepared;
+        }
+        float textSize = paint.getTextSize();
+        paint.set(prepared);
+        paint.setTextSize(textSize);
+    }
+
+    /**
+     * Registers a listener to be called on the main thread once the fonts are loaded.
+     * Only a weak reference is kept, so the caller has to keep the listener alive.
+     * Nothing happens if the fonts are already loaded, as every paint styled afterwards uses them right away
+     *
+     * @param listener The listener to call
+     */
+    static synchronized void addListener(Runnable listener) {
+        if (loaded) {
+            return;
+        }
+        // Drop the listeners of renderers which are already gone
+        Iterator<WeakReference<Runnable>> iterator = LISTENERS.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() == null) {
+                iterator.remove();
+            }
+        }
+        LISTENERS.add(new WeakReference<>(listener));
+    }
+
+    /**
+     * Removes all listeners which are still alive
+     *
+     * @return The removed listeners
+     */
+    private static List<Runnable> takeListeners() {
+        List<Runnable> listeners = new ArrayList<>();
+        for (WeakReference<Runnable> reference : LISTENERS) {
+            Runnable listener = reference.get();
+            if (listener != null) {
+                listeners.add(listener);
+            }
+        }
+        LISTENERS.clear();
+        return listeners;
+    }
+}
@@ -0,0 +1,150 @@
+package de.tgx03.watchface;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stores the last drawn background and complications of the watchface in a file,
+ * so they can be shown immediately when the watchface gets restarted.
+ * The file gets accessed through memory mapping to avoid copying the pixels through streams
+ */
+class FrameSnapshot {
+
+    private static final String TAG = "WatchFace.FrameSnapshot";
+
+    private static final String FILE_NAME = "last_frame";
+    private static final int MAGIC = 0x57465346;
+    private static final int VERSION = 1;
+    // Magic, version, width and height
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    // Writes snapshots one after another so engines don't overwrite each other's files
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor();
+
+    /**
+     * The width of the screen the snapshot was taken on
+     */
+    final int width;
+    /**
+     * The height of the screen the snapshot was taken on
+     */
+    final int height;
+    /**
+     * The content of the snapshot
+     */
+    final Bitmap bitmap;
+
+    private FrameSnapshot(Bitmap bitmap) {
+        this.width = bitmap.getWidth();
+        this.height = bitmap.getHeight();
+        this.bitmap = bitmap;
+    }
+
+    /**
+     * @param context The context to get the storage location from
+     * @return The file the snapshot gets stored in
+     */
+    static File getFile(Context context) {
+        return new File(context.getNoBackupFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Loads the last stored snapshot
+     *
+     * @param file The file the snapshot was stored in
+     * @return The snapshot or null if there is no valid one
+     */
+    static FrameSnapshot load(File file) {
+        if (!file.isFile()) {
+            Log.d(TAG, "No snapshot available");
+            return null;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                Log.w(TAG, "Snapshot too small");
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                Log.w(TAG, "Snapshot has an unknown format");
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (width <= 0 || height <= 0 || size != HEADER_SIZE + (long) width * height * 4) {
+                Log.w(TAG, "Snapshot has an invalid size");
+                return null;
+            }
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.copyPixelsFromBuffer(buffer);
+            Log.d(TAG, "Loaded snapshot of " + width + "x" + height);
+            return new FrameSnapshot(bitmap);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Couldn't load snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the stored snapshot in the background,
+     * after all snapshots handed over before have been stored
+     *
+     * @param file The file the snapshot was stored in
+     */
+    static void delete(File file) {
+        WRITER.execute(() -> {
+            if (!file.exists()) {
+                return;
+            }
+            if (!file.delete()) {
+                Log.w(TAG, "Couldn't delete snapshot");
+            } else {
+                Log.d(TAG, "Deleted snapshot");
+            }
+        });
+    }
+
+    /**
+     * Stores a snapshot in the background.
+     * The bitmap mustn't be changed anymore after handing it over
+     *
+     * @param file   The file to store the snapshot in
+     * @param bitmap The content of the snapshot in ARGB_8888
+     */
+    static void save(File file, Bitmap bitmap) {
+        WRITER.execute(() -> {
+            File temp = new File(file.getPath() + ".tmp");
+            long size = HEADER_SIZE + (long) bitmap.getByteCount();
+            try (RandomAccessFile output = new RandomAccessFile(temp, "rw"); FileChannel channel = output.getChannel()) {
+                output.setLength(size);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(bitmap.getWidth());
+                buffer.putInt(bitmap.getHeight());
+                bitmap.copyPixelsToBuffer(buffer);
+                buffer.force();
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Couldn't store snapshot", e);
+                return;
+            } finally {
+                bitmap.recycle();
+            }
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Couldn't replace snapshot");
+            } else {
+                Log.d(TAG, "Stored snapshot");
+            }
+        });
+    }
+}
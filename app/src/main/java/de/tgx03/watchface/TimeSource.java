@@ -0,0 +1,138 @@
+package de.tgx03.watchface;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tells the watchface what time it is.
+ * Besides the system time, this allows showing fixed, shifted or accelerated times,
+ * so a whole day of the watchface can be replayed in a short time
+ */
+interface TimeSource {
+
+    /**
+     * @return The current time in milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+    /**
+     * Converts a delay measured in the time of this source into a delay in real time,
+     * which can be used for scheduling
+     *
+     * @param delayMs The delay in the time of this source
+     * @return The delay in real time
+     */
+    default long toRealDelay(long delayMs) {
+        return delayMs;
+    }
+
+    /**
+     * Calculates how long to wait in real time until the time of this source reaches the next multiple of an interval,
+     * for example the next full second. Waits a whole interval when currently exactly at a multiple
+     *
+     * @param intervalMs The interval in the time of this source
+     * @return The delay in real time
+     */
+    default long getRealDelayUntilNext(long intervalMs) {
+        return toRealDelay(intervalMs - (currentTimeMillis() % intervalMs));
+    }
+
+    /**
+     * @return A time source returning the time of the system
+     */
+    static TimeSource system() {
+        return System::currentTimeMillis;
+    }
+
+    /**
+     * Creates a time source which always returns the same time until it gets changed
+     *
+     * @param time The time to return
+     * @return The new time source
+     */
+    static Fixed fixed(long time) {
+        return new Fixed(time);
+    }
+
+    /**
+     * Creates a time source which is always shifted by the same amount from another one
+     *
+     * @param source   The time source to shift
+     * @param offsetMs How far to shift the time
+     * @return The new time source
+     */
+    static TimeSource offset(TimeSource source, long offsetMs) {
+        return new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return source.currentTimeMillis() + offsetMs;
+            }
+
+            @Override
+            public long toRealDelay(long delayMs) {
+                return source.toRealDelay(delayMs);
+            }
+        };
+    }
+
+    /**
+     * Creates a time source which starts at a given time and then runs faster than real time
+     *
+     * @param start  The time to start at
+     * @param factor How much faster than real time this runs
+     * @return The new time source
+     * @throws IllegalArgumentException Gets thrown when the factor isn't positive
+     */
+    static TimeSource fastForward(long start, double factor) throws IllegalArgumentException {
+        if (!(factor > 0)) {
+            throw new IllegalArgumentException("Factor must be positive, was " + factor);
+        }
+        long realStart = SystemClock.elapsedRealtime();
+        return new TimeSource() {
+            @Override
+            public long currentTimeMillis() {
+                return start + (long) ((SystemClock.elapsedRealtime() - realStart) * factor);
+            }
+
+            @Override
+            public long toRealDelay(long delayMs) {
+                return (long) Math.ceil(delayMs / factor);
+            }
+        };
+    }
+
+    /**
+     * A time source that only changes its time when told to.
+     * It can be shared between threads
+     */
+    class Fixed implements TimeSource {
+
+        private final AtomicLong time;
+
+        private Fixed(long time) {
+            this.time = new AtomicLong(time);
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return time.get();
+        }
+
+        /**
+         * @param time The new time to return
+         */
+        public void setTime(long time) {
+            this.time.set(time);
+        }
+
+        /**
+         * Moves the time forward
+         *
+         * @param deltaMs How far to move the time
+         */
+        public void advance(long deltaMs) {
+            time.addAndGet(deltaMs);
+        }
+    }
+}
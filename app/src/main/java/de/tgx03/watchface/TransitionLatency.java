@@ -0,0 +1,73 @@
+package de.tgx03.watchface;
+
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Records how long it takes from switching from ambient to interactive mode
+ * until the first interactive frame has been drawn
+ */
+class TransitionLatency {
+
+    private static final String TAG = "WatchFace.TransitionLatency";
+
+    private int count;
+    private int prewarmedCount;
+    private long lastNanos;
+    private long maxNanos;
+    private long totalNanos;
+
+    /**
+     * Records a single transition
+     *
+     * @param nanos     The time from the mode switch until the first frame was drawn
+     * @param prewarmed Whether the interactive layer was already up to date when the mode switched
+     */
+    void record(long nanos, boolean prewarmed) {
+        count++;
+        if (prewarmed) {
+            prewarmedCount++;
+        }
+        lastNanos = nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+        totalNanos += nanos;
+        Log.i(TAG, String.format(Locale.ROOT, "First interactive frame after %.2fms (%s), average %.2fms, max %.2fms over %d transitions",
+                nanos / 1e6, prewarmed ? "prewarmed" : "cold", getAverageNanos() / 1e6, maxNanos / 1e6, count));
+    }
+
+    /**
+     * @return How many transitions were recorded
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return How many transitions found the interactive layer already up to date
+     */
+    int getPrewarmedCount() {
+        return prewarmedCount;
+    }
+
+    /**
+     * @return The latency of the last transition in nanoseconds
+     */
+    long getLastNanos() {
+        return lastNanos;
+    }
+
+    /**
+     * @return The highest recorded latency in nanoseconds
+     */
+    long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return The average latency in nanoseconds or 0 if nothing was recorded yet
+     */
+    long getAverageNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+}
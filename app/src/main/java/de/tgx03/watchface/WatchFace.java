@@ -8,23 +8,20 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
-import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.wearable.complications.ComplicationData;
 import android.support.wearable.complications.ComplicationHelperActivity;
-import android.support.wearable.complications.rendering.ComplicationDrawable;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
+import java.io.File;
 import java.lang.ref.WeakReference;
-import java.util.Calendar;
 import java.util.Locale;
 import java.util.TimeZone;
 
@@ -36,6 +33,8 @@ public class WatchFace extends CanvasWatchFaceService {
 
     // Updates rate in milliseconds for interactive mode
     private static final short INTERACTIVE_UPDATE_RATE_MS = 1000;
+    // The minimum time between two ambient frames drawn because a complication changed
+    private static final int AMBIENT_COMPLICATION_RATE_MS = 20 * 1000;
 
     /**
      * Whether complications get drawn in ambient
@@ -47,35 +46,88 @@ public class WatchFace extends CanvasWatchFaceService {
     protected static boolean emptyComplications = false;
 
     // Complication IDs
-    protected static final byte BACKGROUND_COMPLICATION = 0;
-    protected static final byte TOP_COMPLICATION = 1;
-    protected static final byte BOTTOM_LARGE_COMPLICATION = 2;
-    protected static final byte BOTTOM_LEFT_COMPLICATION = 3;
-    protected static final byte BOTTOM_MIDDLE_COMPLICATION = 4;
-    protected static final byte BOTTOM_RIGHT_COMPLICATION = 5;
-
-    private static final int[][] COMPLICATION_SUPPORTED_TYPES = {
-            // Background Complication
-            {ComplicationData.TYPE_LARGE_IMAGE},
-            // Big top complication
-            {ComplicationData.TYPE_LONG_TEXT,
-                    ComplicationData.TYPE_SHORT_TEXT,
-                    ComplicationData.TYPE_ICON,
-                    ComplicationData.TYPE_RANGED_VALUE,
-                    ComplicationData.TYPE_SMALL_IMAGE},
-            // Small bottom complications
-            {ComplicationData.TYPE_SHORT_TEXT,
-                    ComplicationData.TYPE_ICON,
-                    ComplicationData.TYPE_RANGED_VALUE,
-                    ComplicationData.TYPE_SMALL_IMAGE}};
-
-    private final ComplicationDrawable[] complicationDrawables = new ComplicationDrawable[6];
-    private final ComplicationData[] complicationData = new ComplicationData[6];
+    protected static final int BACKGROUND_COMPLICATION = 0;
+    protected static final int TOP_COMPLICATION = 1;
+    protected static final int BOTTOM_LARGE_COMPLICATION = 2;
+    protected static final int BOTTOM_LEFT_COMPLICATION = 3;
+    protected static final int BOTTOM_MIDDLE_COMPLICATION = 4;
+    protected static final int BOTTOM_RIGHT_COMPLICATION = 5;
+
+    // Types supported by the large complications
+    private static final int[] LARGE_COMPLICATION_TYPES = {
+            ComplicationData.TYPE_LONG_TEXT,
+            ComplicationData.TYPE_SHORT_TEXT,
+            ComplicationData.TYPE_ICON,
+            ComplicationData.TYPE_RANGED_VALUE,
+            ComplicationData.TYPE_SMALL_IMAGE};
+    // Types supported by the small bottom complications
+    private static final int[] SMALL_COMPLICATION_TYPES = {
+            ComplicationData.TYPE_SHORT_TEXT,
+            ComplicationData.TYPE_ICON,
+            ComplicationData.TYPE_RANGED_VALUE,
+            ComplicationData.TYPE_SMALL_IMAGE};
+
+    // Left and right boundaries for large complications
+    private static final float LARGE_COMPLICATION_LEFT = 0.2f;
+    private static final float LARGE_COMPLICATION_RIGHT = 0.8f;
+
+    // The coordinates for the large top complication
+    private static final float TOP_COMPLICATION_TOP = 0.08f;
+    private static final float TOP_COMPLICATION_BOTTOM = 0.23f;
+
+    // The coordinates of the large bottom complication
+    private static final float BOTTOM_LARGE_COMPLICATION_TOP = 0.77f;
+    private static final float BOTTOM_LARGE_COMPLICATION_BOTTOM = 0.92f;
+
+    // The coordinates for the smaller bottom complications, relative to the smaller side of the screen
+    private static final float BOTTOM_COMPLICATIONS_TOP = 0.56f;
+    private static final float BOTTOM_COMPLICATIONS_BOTTOM = 0.75f;
+    private static final float BOTTOM_MIDDLE_COMPLICATION_LEFT = 0.405f;
+    private static final float BOTTOM_MIDDLE_COMPLICATION_RIGHT = 0.595f;
+    private static final float BOTTOM_LEFT_COMPLICATION_LEFT = 0.185f;
+    private static final float BOTTOM_LEFT_COMPLICATION_RIGHT = 0.375f;
+    private static final float BOTTOM_RIGHT_COMPLICATION_LEFT = 0.625f;
+    private static final float BOTTOM_RIGHT_COMPLICATION_RIGHT = 0.815f;
+
+    /**
+     * All complication slots of this watchface, ordered by their ID
+     */
+    static final ComplicationSlot[] COMPLICATION_SLOTS = {
+            new ComplicationSlot(BACKGROUND_COMPLICATION, R.drawable.background_complication, true,
+                    0, 0, 1, 1, false, ComplicationData.TYPE_LARGE_IMAGE),
+            new ComplicationSlot(TOP_COMPLICATION, R.drawable.complication, false,
+                    LARGE_COMPLICATION_LEFT, TOP_COMPLICATION_TOP, LARGE_COMPLICATION_RIGHT, TOP_COMPLICATION_BOTTOM, false, LARGE_COMPLICATION_TYPES),
+            new ComplicationSlot(BOTTOM_LARGE_COMPLICATION, R.drawable.complication, false,
+                    LARGE_COMPLICATION_LEFT, BOTTOM_LARGE_COMPLICATION_TOP, LARGE_COMPLICATION_RIGHT, BOTTOM_LARGE_COMPLICATION_BOTTOM, false, LARGE_COMPLICATION_TYPES),
+            new ComplicationSlot(BOTTOM_LEFT_COMPLICATION, R.drawable.complication, false,
+                    BOTTOM_LEFT_COMPLICATION_LEFT, BOTTOM_COMPLICATIONS_TOP, BOTTOM_LEFT_COMPLICATION_RIGHT, BOTTOM_COMPLICATIONS_BOTTOM, true, SMALL_COMPLICATION_TYPES),
+            new ComplicationSlot(BOTTOM_MIDDLE_COMPLICATION, R.drawable.complication, false,
+                    BOTTOM_MIDDLE_COMPLICATION_LEFT, BOTTOM_COMPLICATIONS_TOP, BOTTOM_MIDDLE_COMPLICATION_RIGHT, BOTTOM_COMPLICATIONS_BOTTOM, true, SMALL_COMPLICATION_TYPES),
+            new ComplicationSlot(BOTTOM_RIGHT_COMPLICATION, R.drawable.complication, false,
+                    BOTTOM_RIGHT_COMPLICATION_LEFT, BOTTOM_COMPLICATIONS_TOP, BOTTOM_RIGHT_COMPLICATION_RIGHT, BOTTOM_COMPLICATIONS_BOTTOM, true, SMALL_COMPLICATION_TYPES)};
 
     /**
      * Handler message id for updating the time periodically in interactive mode.
      */
     private static final byte MSG_UPDATE_DISPLAY = 0;
+    /**
+     * Handler message id for redrawing complications whose text changed while in ambient mode.
+     */
+    private static final byte MSG_UPDATE_COMPLICATIONS = 1;
+    /**
+     * Handler message id for no longer showing the snapshot of the last run.
+     */
+    private static final byte MSG_DISCARD_SNAPSHOT = 2;
+    /**
+     * Handler message id for preparing the interactive layer after an ambient frame.
+     */
+    private static final byte MSG_PREWARM = 3;
+
+    // How long the snapshot of the last run gets shown at most while waiting for complications
+    private static final short SNAPSHOT_TIMEOUT_MS = 5000;
+    // Snapshot generations meaning that a snapshot of the last run might still be stored or none is stored
+    private static final int SNAPSHOT_UNKNOWN = -1;
+    private static final int SNAPSHOT_NONE = -2;
 
     @Override
     public Engine onCreateEngine() {
@@ -104,19 +156,11 @@ public class WatchFace extends CanvasWatchFaceService {
      * @param id The id of the requested complication
      * @return All the types supported by this complications
      */
-    protected static int[] getSupportedComplications(byte id) {
-        switch (id) {
-            case BACKGROUND_COMPLICATION:
-                return COMPLICATION_SUPPORTED_TYPES[0];
-            case TOP_COMPLICATION:
-            case BOTTOM_LARGE_COMPLICATION:
-                return COMPLICATION_SUPPORTED_TYPES[1];
-            case BOTTOM_LEFT_COMPLICATION:
-            case BOTTOM_RIGHT_COMPLICATION:
-            case BOTTOM_MIDDLE_COMPLICATION:
-                return COMPLICATION_SUPPORTED_TYPES[2];
-            default:
-                return new int[0];
+    protected static int[] getSupportedComplications(int id) {
+        if (id >= 0 && id < COMPLICATION_SLOTS.length) {
+            return COMPLICATION_SLOTS[id].supportedTypes;
+        } else {
+            return new int[0];
         }
     }
 
@@ -124,82 +168,37 @@ public class WatchFace extends CanvasWatchFaceService {
 
         private static final String TAG = "WatchFace.Engine";
 
-        // The device features
-        private boolean requiredBurnInProtection = true;   // True by default to not damage screen before actual data provided
-        private boolean lastMovedRight = false; // Used to alternatingly move stuff right or left
-
         // Whether this is currently registered for receiving timezone changes
         private boolean receiving;
         // The filter for receiving timezone changes
         private final IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
 
-        private Integer screenWidth;
-        private Integer screenHeight;
-
-        // Values for time position and size
-        private float timeX;
-        private float timeY;
-        private float timeXBurnIn;
-        private static final float DEFAULT_TIME_Y = 0.47f;
-        private static final float DEFAULT_TIME_SIZE = 0.3f;
-        private static final float DEFAULT_SECONDS_SIZE = 0.09f;
-
-        // Values for seconds position and size
-        private float secondsX;
-
-        // Values for date position and size
-        private String lastDate;
-        private float dateX;
-        private float dateY;
-        private float dateXBurnIn;
-        private static final float DEFAULT_DATE_VERTICAL_OFFSET = 0.04f;
-        private static final float DEFAULT_DATE_SIZE = 0.07f;
-
-        // Styles for elements
-        private final Paint background = new Paint();
-        private final Paint timePaint = new Paint();
-        private final Paint timePaintAmbient = new Paint();
-        private final Paint datePaint = new Paint();
-        private final Paint datePaintAmbient = new Paint();
-        private final Paint secondsPaint = new Paint();
-
-        private final Calendar calendar = Calendar.getInstance();
+        // Draws the watchface and holds the complications
+        private FaceRenderer renderer;
+        // Where the watchface gets the current time from
+        private TimeSource timeSource = TimeSource.system();
+        // Where the last frame gets stored between runs
+        private File snapshotFile;
+        // The generation of the complication layer which was last stored
+        private int snapshotGeneration = SNAPSHOT_UNKNOWN;
+        // Stores the data of the complications between runs
+        private ComplicationDataCache complicationCache;
+
+        // When the last switch to interactive mode happened or 0 if its first frame has already been drawn
+        private long wakeStartNanos = 0;
+        // The time of the watchface when the last ambient frame was drawn
+        private long lastAmbientDraw = 0;
+        // Whether the interactive layer was up to date at the last switch to interactive mode
+        private boolean wakePrewarmed;
+        private final TransitionLatency wakeLatency = new TransitionLatency();
 
         private final Handler updateTimeHandler = new UpdateTimeHandler(new WeakReference<>(this));
 
-        private boolean validBackground = false;
-
-        // Left and right boundaries for large complications
-        private static final float LARGE_COMPLICATION_LEFT = 0.2f;
-        private static final float LARGE_COMPLICATION_RIGHT = 0.8f;
-
-        // The coordinates for the large top complication
-        private static final float TOP_COMPLICATION_TOP = 0.08f;
-        private static final float TOP_COMPLICATION_BOTTOM = 0.23f;
-        private Rect topComplication;
-
-        // The coordinates of the large bottom complication
-        private static final float BOTTOM_LARGE_COMPLICATION_TOP = 0.77f;
-        private static final float BOTTOM_LARGE_COMPLICATION_BOTTOM = 0.92f;
-        private Rect bottomLargeComplication;
-
-        // The coordinates for the smaller bottom complications
-        private static final float BOTTOM_COMPLICATIONS_TOP = 0.56f;
-        private static final float BOTTOM_COMPLICATIONS_BOTTOM = 0.75f;
-        private static final float BOTTOM_MIDDLE_COMPLICATION_LEFT = 0.405f;
-        private static final float BOTTOM_MIDDLE_COMPLICATION_RIGHT = 0.595f;
-        private static final float BOTTOM_LEFT_COMPLICATION_LEFT = 0.185f;
-        private static final float BOTTOM_LEFT_COMPLICATION_RIGHT = 0.375f;
-        private static final float BOTTOM_RIGHT_COMPLICATION_LEFT = 0.625f;
-        private static final float BOTTOM_RIGHT_COMPLICATION_RIGHT = 0.815f;
-        private Rect leftComplication;
-        private Rect middleComplication;
-        private Rect rightComplication;
-
         private final BroadcastReceiver timeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                calendar.setTimeZone(TimeZone.getDefault());
+                renderer.setTimeZone(TimeZone.getDefault());
+                renderer.setLocale(Locale.getDefault());
                 invalidate();
             }
         };
@@ -210,112 +209,46 @@ public class WatchFace extends CanvasWatchFaceService {
 
             filter.addAction(Intent.ACTION_LOCALE_CHANGED);
 
-            background.setColor(Color.BLACK);
-
             setWatchFaceStyle(new WatchFaceStyle.Builder(WatchFace.this).setAccentColor(getColor(R.color.date)).setAcceptsTapEvents(true).build());
 
-            timePaint.setColor(getResources().getColor(R.color.time, getTheme()));
-            timePaint.setTypeface(Typeface.DEFAULT_BOLD);
-            timePaint.setAntiAlias(true);
-
-            timePaintAmbient.set(timePaint);
-
-            secondsPaint.setColor(getResources().getColor(R.color.seconds, getTheme()));
-            secondsPaint.setTypeface(Typeface.DEFAULT);
-            secondsPaint.setAntiAlias(true);
+            renderer = new FaceRenderer(WatchFace.this, COMPLICATION_SLOTS, this::invalidate);
+            setActiveComplications(renderer.getComplicationIds());
 
-            datePaint.setColor(getResources().getColor(R.color.date, getTheme()));
-            datePaint.setTypeface(Typeface.DEFAULT);
-            datePaint.setAntiAlias(true);
-
-            datePaintAmbient.set(datePaint);
-            datePaintAmbient.setColor(Color.WHITE);
+            // Restore the complications of the previous run until their providers deliver new data
+            long now = timeSource.currentTimeMillis();
+            complicationCache = new ComplicationDataCache(WatchFace.this, renderer.getComplicationIds().length);
+            ComplicationData[] cached = complicationCache.load(now);
+            for (int i = 0; i < cached.length; i++) {
+                if (cached[i] != null) {
+                    renderer.setComplicationData(i, cached[i], now);
+                }
+            }
 
-            initializeComplications();
+            // Show the last frame of the previous run until the complications have been delivered again
+            snapshotFile = FrameSnapshot.getFile(WatchFace.this);
+            FrameSnapshot snapshot = renderer.isWarm() ? null : FrameSnapshot.load(snapshotFile);
+            if (snapshot != null) {
+                renderer.setSnapshot(snapshot.bitmap);
+                renderer.setSize(snapshot.width, snapshot.height);
+                updateTimeHandler.sendEmptyMessageDelayed(MSG_DISCARD_SNAPSHOT, SNAPSHOT_TIMEOUT_MS);
+            }
         }
 
         public void onSurfaceChanged(SurfaceHolder holder, int format, int width, int height) {
-            screenHeight = height;
-            screenWidth = width;
-
             Log.d(TAG, "Surface changed");
-            int smaller = Math.min(width, height);
-            float timeSize = DEFAULT_TIME_SIZE * smaller;
-            timePaint.setTextSize(timeSize);
-            timePaintAmbient.setTextSize(timeSize);
-            secondsPaint.setTextSize(DEFAULT_SECONDS_SIZE * smaller);
-            float timeLength = timePaint.measureText("12:34");
-            timeX = (float) (width / 2) - (timeLength / 2);
-            timeY = height * DEFAULT_TIME_Y;
-            dateY = (float) (height / 2) + DEFAULT_DATE_VERTICAL_OFFSET * height;
-            secondsX = timeLength + timeX;
-            float dateSize = DEFAULT_DATE_SIZE * width;
-            datePaint.setTextSize(dateSize);
-            datePaintAmbient.setTextSize(dateSize);
-
-            Rect backgroundComplication = new Rect(0, 0, width, height);
-            complicationDrawables[BACKGROUND_COMPLICATION].setBounds(backgroundComplication);
-
-            Log.d(TAG, "Calculating complication bounds");
-            topComplication = new Rect(Math.round(LARGE_COMPLICATION_LEFT * width), Math.round(TOP_COMPLICATION_TOP * height), Math.round(LARGE_COMPLICATION_RIGHT * width), Math.round(TOP_COMPLICATION_BOTTOM * height));
-            complicationDrawables[TOP_COMPLICATION].setBounds(topComplication);
-
-            bottomLargeComplication = new Rect(Math.round(LARGE_COMPLICATION_LEFT * width), Math.round(BOTTOM_LARGE_COMPLICATION_TOP * height), Math.round(LARGE_COMPLICATION_RIGHT * width), Math.round(BOTTOM_LARGE_COMPLICATION_BOTTOM * height));
-            complicationDrawables[BOTTOM_LARGE_COMPLICATION].setBounds(bottomLargeComplication);
-
-            middleComplication = new Rect(Math.round(BOTTOM_MIDDLE_COMPLICATION_LEFT * smaller), Math.round(BOTTOM_COMPLICATIONS_TOP * smaller), Math.round(BOTTOM_MIDDLE_COMPLICATION_RIGHT * smaller), Math.round(BOTTOM_COMPLICATIONS_BOTTOM * smaller));
-            complicationDrawables[BOTTOM_MIDDLE_COMPLICATION].setBounds(middleComplication);
-
-            leftComplication = new Rect(Math.round(BOTTOM_LEFT_COMPLICATION_LEFT * smaller), Math.round(BOTTOM_COMPLICATIONS_TOP * smaller), Math.round(BOTTOM_LEFT_COMPLICATION_RIGHT * smaller), Math.round(BOTTOM_COMPLICATIONS_BOTTOM * smaller));
-            complicationDrawables[BOTTOM_LEFT_COMPLICATION].setBounds(leftComplication);
-
-            rightComplication = new Rect(Math.round(BOTTOM_RIGHT_COMPLICATION_LEFT * smaller), Math.round(BOTTOM_COMPLICATIONS_TOP * smaller), Math.round(BOTTOM_RIGHT_COMPLICATION_RIGHT * smaller), Math.round(BOTTOM_COMPLICATIONS_BOTTOM * smaller));
-            complicationDrawables[BOTTOM_RIGHT_COMPLICATION].setBounds(rightComplication);
-
-            if (!requiredBurnInProtection) {
-                Log.d(TAG, "Clearing set Rectangles because they're not needed without burn in protection");
-                topComplication = null;
-                bottomLargeComplication = null;
-                leftComplication = null;
-                middleComplication = null;
-                rightComplication = null;
+            // The layout might already have been restored from the snapshot
+            if (!renderer.hasSize() || renderer.getWidth() != width || renderer.getHeight() != height) {
+                renderer.setSize(width, height);
             }
         }
 
         public void onPropertiesChanged(Bundle properties) {
             super.onPropertiesChanged(properties);
 
-            requiredBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
-            // Clear complication bounds when burn in protection isn't required but they are set
-            if (!requiredBurnInProtection && (topComplication != null || leftComplication != null || middleComplication != null || rightComplication != null)) {
-                restoreCoordinates();
-                topComplication = null;
-                bottomLargeComplication = null;
-                leftComplication = null;
-                middleComplication = null;
-                rightComplication = null;
-                // Get complication bounds because they're needed for burn in protection
-            } else if (requiredBurnInProtection && (topComplication == null || leftComplication == null || middleComplication == null || rightComplication == null)) {
-                topComplication = complicationDrawables[TOP_COMPLICATION].getBounds();
-                bottomLargeComplication = complicationDrawables[BOTTOM_LARGE_COMPLICATION].getBounds();
-                leftComplication = complicationDrawables[BOTTOM_LEFT_COMPLICATION].getBounds();
-                middleComplication = complicationDrawables[BOTTOM_MIDDLE_COMPLICATION].getBounds();
-                rightComplication = complicationDrawables[BOTTOM_RIGHT_COMPLICATION].getBounds();
-            }
-
+            boolean requiredBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
             // Whether this device uses low bit ambient mode
             boolean lowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
-            // Enable or disable anti alias for time and date depending on whether in low bit ambient
-            if (lowBitAmbient) {
-                timePaintAmbient.setAntiAlias(false);
-                datePaintAmbient.setAntiAlias(false);
-            } else {
-                timePaintAmbient.setAntiAlias(true);
-                datePaintAmbient.setAntiAlias(true);
-            }
-            for (ComplicationDrawable drawable : complicationDrawables) {
-                drawable.setLowBitAmbient(lowBitAmbient);
-            }
+            renderer.setProperties(requiredBurnInProtection, lowBitAmbient);
             Log.d(TAG, "Properties changed. Burn in: " + requiredBurnInProtection + " Low Bit Ambient: " + lowBitAmbient);
         }
 
@@ -329,62 +262,28 @@ public class WatchFace extends CanvasWatchFaceService {
         public void onAmbientModeChanged(boolean inAmbientMode) {
             Log.d(TAG, "Ambient mode " + (inAmbientMode ? "enabled" : "disabled"));
             super.onAmbientModeChanged(inAmbientMode);
-            if (requiredBurnInProtection && !inAmbientMode) {
-                restoreCoordinates();
-            }
-            for (ComplicationDrawable drawable : complicationDrawables) {
-                drawable.setInAmbientMode(inAmbientMode);
+            // Only a switch while visible gets shown right away and can be measured
+            if (!inAmbientMode && isVisible()) {
+                wakeStartNanos = SystemClock.elapsedRealtimeNanos();
+                wakePrewarmed = renderer.isLayerCurrent(timeSource.currentTimeMillis());
             }
+            renderer.setAmbient(inAmbientMode);
             invalidate();
             updateTimer();
+            scheduleComplicationUpdate();
         }
 
         public void onDraw(Canvas canvas, Rect bounds) {
-            // Get basic data to draw
-            long now = System.currentTimeMillis();
-            calendar.setTimeInMillis(now);
-            String time = createTime();
-            String date = createDate();
-            // Re-calculate the position of the date if it has changed since the last draw
-            if (!date.equals(lastDate)) {
-                String day = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.LONG, Locale.getDefault()) + " ";
-                float lengthWODash = datePaint.measureText(day);
-                float lengthWDash = datePaint.measureText(day + "|");
-                float average = (lengthWDash + lengthWODash) / 2;
-                dateX = (float) (bounds.right / 2) - average;
-                lastDate = date;
-            }
-            // Draw the background complication if not in ambient and one is set
-            if (!isInAmbientMode() && validBackground) {
-                Log.d(TAG, "Drawing background complication");
-                complicationDrawables[BACKGROUND_COMPLICATION].draw(canvas, now);
-            } else {
-                // Clear the background
-                Log.d(TAG, "Clearing background");
-                canvas.drawRect(bounds, background);
-            }
-            // Draw default ambient
-            if (isInAmbientMode() && !requiredBurnInProtection) {
-                Log.d(TAG, "Drawing ambient, no burn in protection");
-                canvas.drawText(time, timeX, timeY, timePaintAmbient);
-                canvas.drawText(date, dateX, dateY, datePaintAmbient);
-                // Draw ambient with shifting coordinates
-            } else if (isInAmbientMode()) {
-                Log.d(TAG, "Drawing ambient, with burn in protection");
-                randomizeCoordinates();
-                canvas.drawText(time, timeXBurnIn, timeY, timePaintAmbient);
-                canvas.drawText(date, dateXBurnIn, dateY, datePaintAmbient);
-            } else {
-                // Draw active
-                Log.d(TAG, "Drawing active");
-                String second = formatLeadingZeroes(calendar.get(Calendar.SECOND));
-                canvas.drawText(time, timeX, timeY, timePaint);
-                canvas.drawText(date, dateX, dateY, datePaint);
-                canvas.drawText(second, secondsX, timeY, secondsPaint);
-            }
-            // Draw complications
-            if (!isInAmbientMode() || complicationsInAmbient) {
-                drawComplications(canvas, now);
+            renderer.draw(canvas, bounds, timeSource.currentTimeMillis());
+            if (isInAmbientMode()) {
+                lastAmbientDraw = timeSource.currentTimeMillis();
+                scheduleComplicationUpdate();
+                // Prepare the interactive layer once this frame is shown
+                updateTimeHandler.removeMessages(MSG_PREWARM);
+                updateTimeHandler.sendEmptyMessage(MSG_PREWARM);
+            } else if (wakeStartNanos != 0) {
+                wakeLatency.record(SystemClock.elapsedRealtimeNanos() - wakeStartNanos, wakePrewarmed);
+                wakeStartNanos = 0;
             }
         }
 
@@ -394,33 +293,44 @@ public class WatchFace extends CanvasWatchFaceService {
 
             if (visible) {
                 registerReceiver();
-                calendar.setTimeZone(TimeZone.getDefault());
+                renderer.setTimeZone(TimeZone.getDefault());
+                renderer.setLocale(Locale.getDefault());
             } else {
                 unregisterReceiver();
+                // The first interactive frame won't be drawn until visible again
+                wakeStartNanos = 0;
             }
+            scheduleComplicationUpdate();
+
+            saveSnapshot();
         }
 
         public void onComplicationDataUpdate(int complicationID, ComplicationData data) {
-            complicationDrawables[complicationID].setComplicationData(data);
-            complicationData[complicationID] = data;
-            if (complicationID == BACKGROUND_COMPLICATION) {
-                validBackground = data.getType() == ComplicationData.TYPE_LARGE_IMAGE;
-            }
+            long now = timeSource.currentTimeMillis();
+            renderer.setComplicationData(complicationID, data, now);
+            complicationCache.put(complicationID, data, now);
+            invalidate();
+            scheduleComplicationUpdate();
         }
 
         public void onTapCommand(int tapType, int x, int y, long eventTime) {
             Log.d(TAG, "Tap registered");
             if (tapType == TAP_TYPE_TAP) {
-                byte id = getTappedComplicationsID(x, y);
+                int id = getTappedComplicationsID(x, y);
                 if (id != -1) {
-                    PendingIntent action = complicationData[id].getTapAction();
+                    ComplicationData data = renderer.getComplicationData(id);
+                    if (data == null) {
+                        Log.i(TAG, "Complication has no data yet");
+                        return;
+                    }
+                    PendingIntent action = data.getTapAction();
                     if (action != null) {
                         try {
                             action.send();
                         } catch (PendingIntent.CanceledException e) {
                             Log.e(TAG, "Sending intent for tap action failed", e);
                         }
-                    } else if (complicationData[id].getType() == ComplicationData.TYPE_NO_PERMISSION) {
+                    } else if (data.getType() == ComplicationData.TYPE_NO_PERMISSION) {
                         // Watch face does not have permission to receive complication data, so launch
                         // permission request.
                         ComponentName componentName = new ComponentName(
@@ -448,110 +358,49 @@ public class WatchFace extends CanvasWatchFaceService {
          */
         protected Bitmap screenshot() throws IllegalStateException {
             Log.d(TAG, "Screenshot requested");
-            if (screenWidth == null || screenHeight == null) {
+            if (renderer == null || !renderer.hasSize()) {
                 Log.d(TAG, "Screen size required for screenshot not available");
                 throw new IllegalStateException("WatchFace not fully initialized");
             }
-            Bitmap bitmap = Bitmap.createBitmap(screenWidth, screenHeight, Bitmap.Config.ARGB_8888);
+            Bitmap bitmap = Bitmap.createBitmap(renderer.getWidth(), renderer.getHeight(), Bitmap.Config.ARGB_8888);
             Canvas canvas = new Canvas(bitmap);
-            Rect bounds = new Rect(0, 0, screenWidth, screenHeight);
-            this.onDraw(canvas, bounds);
+            Rect bounds = new Rect(0, 0, renderer.getWidth(), renderer.getHeight());
+            // Draw directly, so the screenshot doesn't count as a shown frame
+            renderer.draw(canvas, bounds, timeSource.currentTimeMillis());
             return bitmap;
         }
 
         /**
-         * Creates an array telling which complications are set and which aren't
-         * Gets used by the settings menu to determine which icon gets shown in that place
-         *
-         * @return Which complications are set
-         */
-        protected boolean[] complicationLocations() {
-            boolean[] rect = new boolean[complicationData.length - 1];
-            for (byte i = 1; i < complicationData.length; i++) {
-                rect[i - 1] = complicationData[i] != null && complicationData[i].getType() != ComplicationData.TYPE_NOT_CONFIGURED && complicationData[i].getType() != ComplicationData.TYPE_EMPTY;
-            }
-            return rect;
-        }
-
-        /**
-         * Offsets the complications and date and time by a random offset
-         * The complications get directly offset
-         * For date and time it is necessary to use the corresponding burn in variable,
-         * the originals don't get changed
-         */
-        private void randomizeCoordinates() {
-            int offset = (int) Math.round(Math.random() * 10);
-            Log.d(TAG, "Randomizing coordinates by " + offset);
-            if (lastMovedRight) {
-                offset = -offset;
-            }
-            Rect topComplication = new Rect(this.topComplication);
-            Rect bottomLargeComplication = new Rect(this.bottomLargeComplication);
-            Rect leftComplication = new Rect(this.leftComplication);
-            Rect middleComplication = new Rect(this.middleComplication);
-            Rect rightComplication = new Rect(this.rightComplication);
-            topComplication.offset(offset, 0);
-            bottomLargeComplication.offset(offset, 0);
-            leftComplication.offset(offset, 0);
-            middleComplication.offset(offset, 0);
-            rightComplication.offset(offset, 0);
-            complicationDrawables[TOP_COMPLICATION].setBounds(topComplication);
-            complicationDrawables[BOTTOM_LARGE_COMPLICATION].setBounds(bottomLargeComplication);
-            complicationDrawables[BOTTOM_LEFT_COMPLICATION].setBounds(leftComplication);
-            complicationDrawables[BOTTOM_MIDDLE_COMPLICATION].setBounds(middleComplication);
-            complicationDrawables[BOTTOM_RIGHT_COMPLICATION].setBounds(rightComplication);
-            lastMovedRight = !lastMovedRight;
-
-            timeXBurnIn = timeX + offset;
-            dateXBurnIn = dateX + offset;
-        }
-
-        /**
-         * Restores the original coordinates for complications
-         * For date and time, simply don't use the offset variables
-         */
-        private void restoreCoordinates() {
-            Log.d(TAG, "restoring Coordinates");
-            complicationDrawables[TOP_COMPLICATION].setBounds(topComplication);
-            complicationDrawables[BOTTOM_LARGE_COMPLICATION].setBounds(bottomLargeComplication);
-            complicationDrawables[BOTTOM_LEFT_COMPLICATION].setBounds(leftComplication);
-            complicationDrawables[BOTTOM_MIDDLE_COMPLICATION].setBounds(middleComplication);
-            complicationDrawables[BOTTOM_RIGHT_COMPLICATION].setBounds(rightComplication);
-        }
-
-        /**
-         * Creates a string of the current time in 24h format
-         * Because fuck AM/PM
+         * Changes where the watchface gets the current time from,
+         * for example to replay a whole day in a short time
          *
-         * @return A string representing the time
+         * @param timeSource The new source of the current time
          */
-        private String createTime() {
-            String hour = formatLeadingZeroes(calendar.get(Calendar.HOUR_OF_DAY));
-            String minute = formatLeadingZeroes(calendar.get(Calendar.MINUTE));
-            return hour + ":" + minute;
+        protected void setTimeSource(TimeSource timeSource) {
+            Log.d(TAG, "Changing time source");
+            this.timeSource = timeSource;
+            invalidate();
+            updateTimer();
+            scheduleComplicationUpdate();
         }
 
         /**
-         * Creates the string to be shown as date consisting of the weekday, a stroke and the actual date
+         * Gives the recorded times from switching to interactive mode until the first frame was drawn
          *
-         * @return A string of the current day and date
+         * @return The recorded latencies
          */
-        private String createDate() {
-            String day = formatLeadingZeroes(calendar.get(Calendar.DAY_OF_MONTH));
-            String month = formatLeadingZeroes(calendar.get(Calendar.MONTH) + 1);
-            String year = String.valueOf(calendar.get(Calendar.YEAR));
-            String dayName = calendar.getDisplayName(Calendar.DAY_OF_WEEK, Calendar.LONG, Locale.getDefault());
-            return dayName + " | " + day + "/" + month + "/" + year;
+        protected TransitionLatency getWakeLatency() {
+            return wakeLatency;
         }
 
         /**
-         * Creates a string of a numerical value with 2 leading zeroes
+         * Creates an array telling which complications are set and which aren't
+         * Gets used by the settings menu to determine which icon gets shown in that place
          *
-         * @param numbers The value to format
-         * @return A string formatted to 2 leading zeroes
+         * @return Which complications are set
          */
-        private String formatLeadingZeroes(long numbers) {
-            return String.format("%02d", numbers);
+        protected boolean[] complicationLocations() {
+            return renderer.complicationLocations();
         }
 
         /**
@@ -597,39 +446,72 @@ public class WatchFace extends CanvasWatchFaceService {
         }
 
         /**
-         * Creates the complications and the array they get stored in
+         * Schedules a redraw for when a complication changes next while in ambient mode,
+         * so changes between two system ticks don't have to wait for the next one.
+         * The redraw happens at least {@link #AMBIENT_COMPLICATION_RATE_MS} after the last ambient frame,
+         * so complications showing seconds don't wake the watch every second.
+         * In interactive mode the changed complications get picked up by the regular update
          */
-        private void initializeComplications() {
-            Log.d(TAG, "Initializing complications");
+        private void scheduleComplicationUpdate() {
+            updateTimeHandler.removeMessages(MSG_UPDATE_COMPLICATIONS);
+            if (isVisible() && isInAmbientMode() && complicationsInAmbient) {
+                long next = renderer.getNextComplicationChange();
+                if (next != ComplicationUpdateScheduler.NEVER) {
+                    next = Math.max(next, lastAmbientDraw + AMBIENT_COMPLICATION_RATE_MS);
+                    long delayMs = Math.max(0, next - timeSource.currentTimeMillis());
+                    Log.d(TAG, "Next complication update in " + delayMs + "ms");
+                    updateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_COMPLICATIONS, timeSource.toRealDelay(delayMs));
+                }
+            }
+        }
 
-            complicationDrawables[BACKGROUND_COMPLICATION] = (ComplicationDrawable) getDrawable(R.drawable.background_complication);
-            complicationDrawables[BACKGROUND_COMPLICATION].setContext(getApplicationContext());
+        /**
+         * Gets called when the text of a complication changed and redraws the watchface
+         */
+        private void onComplicationsDue() {
+            // An ambient frame drawn in the meantime might already have picked them up
+            if (renderer.markComplicationsDue(timeSource.currentTimeMillis())) {
+                invalidate();
+            }
+            scheduleComplicationUpdate();
+        }
 
-            for (byte i = 1; i < complicationDrawables.length; i++) {
-                complicationDrawables[i] = (ComplicationDrawable) getDrawable(R.drawable.complication);
-                complicationDrawables[i].setContext(getApplicationContext());
+        /**
+         * Stores the complication layer for the next run if anything in it changed since it was last stored.
+         * While any complication changes over time, no snapshot gets kept,
+         * as it would show outdated content the complication cache deliberately doesn't restore
+         */
+        private void saveSnapshot() {
+            long now = timeSource.currentTimeMillis();
+            if (renderer.hasTimeDependentComplications(now)) {
+                if (snapshotGeneration != SNAPSHOT_NONE) {
+                    FrameSnapshot.delete(snapshotFile);
+                    snapshotGeneration = SNAPSHOT_NONE;
+                }
+                return;
+            }
+            Bitmap frame = renderer.copyLayer(now, snapshotGeneration);
+            if (frame != null) {
+                FrameSnapshot.save(snapshotFile, frame);
+                snapshotGeneration = renderer.getLayerGeneration();
             }
+        }
 
-            setActiveComplications(BACKGROUND_COMPLICATION, TOP_COMPLICATION, BOTTOM_LARGE_COMPLICATION, BOTTOM_LEFT_COMPLICATION, BOTTOM_MIDDLE_COMPLICATION, BOTTOM_RIGHT_COMPLICATION);
+        /**
+         * Gets called when the complications took too long to be delivered
+         * and the snapshot of the last run shouldn't be shown anymore
+         */
+        private void discardSnapshot() {
+            renderer.clearSnapshot();
+            invalidate();
         }
 
         /**
-         * Draws the foreground complications on the provided canvas
-         *
-         * @param canvas The canvas the complications should be drawn on
-         * @param time   The time the complications should use when drawing
+         * Brings the interactive layer up to date while idling in ambient mode
          */
-        private void drawComplications(Canvas canvas, long time) {
-            if (emptyComplications) {
-                for (byte i = 1; i < complicationDrawables.length; i++) {
-                    complicationDrawables[i].draw(canvas, time);
-                }
-            } else {
-                for (byte i = 1; i < complicationDrawables.length; i++) {
-                    if (complicationData[i] != null && complicationData[i].getType() != ComplicationData.TYPE_EMPTY && complicationData[i].getType() != ComplicationData.TYPE_NO_DATA && complicationData[i].getType() != ComplicationData.TYPE_NOT_CONFIGURED) {
-                        complicationDrawables[i].draw(canvas, time);
-                    }
-                }
+        private void prewarm() {
+            if (isVisible() && isInAmbientMode()) {
+                renderer.prewarm(timeSource.currentTimeMillis());
             }
         }
 
@@ -641,16 +523,13 @@ public class WatchFace extends CanvasWatchFaceService {
          * @param y The y coordinate of the tapped location
          * @return The ID of the tapped location or -1 if tapped on empty space
          */
-        private byte getTappedComplicationsID(int x, int y) {
+        private int getTappedComplicationsID(int x, int y) {
             Log.d(TAG, "Finding complication at " + x + ";" + y);
-            for (byte i = 1; i < complicationDrawables.length; i++) {
-                ComplicationDrawable drawable = complicationDrawables[i];
-                if (drawable.getBounds().contains(x, y)) {
-                    return i;
-                }
+            int id = renderer.findComplication(x, y);
+            if (id == -1) {
+                Log.d(TAG, "No complication found");
             }
-            Log.d(TAG, "No complication found");
-            return -1;
+            return id;
         }
     }
 
@@ -672,11 +551,17 @@ public class WatchFace extends CanvasWatchFaceService {
                     Log.d(TAG, "received time update message");
                     engine.invalidate();
                     if (engine.shouldTimerRun()) {
-                        long timeMs = System.currentTimeMillis();
-                        long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                                - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                        sendEmptyMessageDelayed(MSG_UPDATE_DISPLAY, delayMs);
+                        sendEmptyMessageDelayed(MSG_UPDATE_DISPLAY, engine.timeSource.getRealDelayUntilNext(INTERACTIVE_UPDATE_RATE_MS));
                     }
+                } else if (message.what == MSG_UPDATE_COMPLICATIONS) {
+                    Log.d(TAG, "received complication update message");
+                    engine.onComplicationsDue();
+                } else if (message.what == MSG_DISCARD_SNAPSHOT) {
+                    Log.d(TAG, "received snapshot timeout message");
+                    engine.discardSnapshot();
+                } else if (message.what == MSG_PREWARM) {
+                    Log.d(TAG, "received prewarm message");
+                    engine.prewarm();
                 }
             }
         }
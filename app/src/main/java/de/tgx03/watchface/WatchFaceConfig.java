@@ -135,7 +135,7 @@ public class WatchFaceConfig extends Activity implements CompoundButton.OnChecke
      *
      * @param id The id of the complication to set
      */
-    private void launchComplicationHelperActivity(byte id) {
+    private void launchComplicationHelperActivity(int id) {
         Log.d(TAG, "Launching complication chooser for complication " + id);
 
         if (id >= 0) {